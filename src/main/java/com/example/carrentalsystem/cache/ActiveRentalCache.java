@@ -0,0 +1,91 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.RentalStatusEnum;
+import com.example.carrentalsystem.repositories.RentalRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Whether a car has an accepted rental today. Each car is probed once a day through the rentals index on
+// (car_id, rental_status_id, start_date, end_date), answers are kept until the day ends or a rental of the car changes.
+@Component
+public class ActiveRentalCache {
+    private final RentalRepository rentalRepository;
+    private final ReferenceDataRegistry referenceData;
+
+    private volatile Day day = new Day(LocalDate.MIN);
+
+    public ActiveRentalCache(RentalRepository rentalRepository, ReferenceDataRegistry referenceData) {
+        this.rentalRepository = rentalRepository;
+        this.referenceData = referenceData;
+    }
+
+    public boolean isRented(Long carID) {
+        Day current = today();
+        Entry entry = current.entries.get(carID);
+        if(entry != null && entry.rented() != null){
+            return entry.rented();
+        }
+
+        long stamp = entry == null ? 0 : entry.stamp();
+        boolean rented = rentalRepository.existsActiveByCarId(carID, referenceData.getRentalStatus(RentalStatusEnum.STATUS_ACCEPTED), current.date);
+
+        // An answer probed while the car was evicted may already be outdated, so it is only kept when the stamp is
+        // unchanged. Checked and stored under the lock of the entry, an eviction cannot slip in between.
+        current.entries.compute(carID, (id, latest) -> {
+            long latestStamp = latest == null ? 0 : latest.stamp();
+            return latestStamp == stamp ? new Entry(stamp, rented) : latest;
+        });
+
+        return rented;
+    }
+
+    // Called when a rental of the car changes. Dropped again after the commit, a probe running before it still
+    // read the old rental.
+    public void evict(Long carID) {
+        evictNow(carID);
+
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(carID);
+                }
+            });
+        }
+    }
+
+    // The entry is kept with a new stamp and without an answer, so a probe that started before sees the change
+    private void evictNow(Long carID) {
+        day.entries.compute(carID, (id, entry) -> new Entry(entry == null ? 1 : entry.stamp() + 1, null));
+    }
+
+    // Rentals start and end at day boundaries, the answers of the previous day are all dropped at once
+    private Day today() {
+        LocalDate today = LocalDate.now();
+        Day current = day;
+        if(!current.date.equals(today)){
+            current = new Day(today);
+            day = current;
+        }
+
+        return current;
+    }
+
+    private static final class Day {
+        private final LocalDate date;
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+        private Day(LocalDate date) {
+            this.date = date;
+        }
+    }
+
+    // The stamp is raised by every eviction of the car, rented is null until the car has been probed again
+    private record Entry(long stamp, Boolean rented) {
+    }
+}
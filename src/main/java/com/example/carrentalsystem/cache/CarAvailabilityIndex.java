@@ -0,0 +1,279 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.RentalStatusEnum;
+import com.example.carrentalsystem.repositories.RentalPeriod;
+import com.example.carrentalsystem.repositories.RentalRepository;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Loaded on startup by CatalogSnapshotFile, either from the database or from the snapshot file.
+// Only rentals changed on this node reach the index, SingleNodeLock keeps a second node from starting.
+@Component
+@DependsOn("singleNodeLock")
+public class CarAvailabilityIndex {
+    // Rentals with these statuses make the car unavailable for their dates
+    public static final Set<RentalStatusEnum> BLOCKING_STATUSES = EnumSet.of(RentalStatusEnum.STATUS_PENDING, RentalStatusEnum.STATUS_ACCEPTED);
+
+    private final RentalRepository rentalRepository;
+    private final Map<Long, Bookings> bookingsByCar = new ConcurrentHashMap<>();
+    private final Map<Long, Long> carByRental = new ConcurrentHashMap<>();
+
+    // Changes made while load() reads the database, replayed on top of what it read. Guarded by this.
+    private List<Runnable> pendingChanges;
+    private long version;
+
+    public CarAvailabilityIndex(RentalRepository rentalRepository) {
+        this.rentalRepository = rentalRepository;
+    }
+
+    // May run in the background while rentals change, isFree() keeps answering from the previous bookings meanwhile
+    public void load() {
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+
+        Map<Long, List<RentalPeriod>> periodsByCar = new HashMap<>();
+        for (RentalPeriod period : rentalRepository.findPeriodsByRentalStatusNameIn(BLOCKING_STATUSES)) {
+            periodsByCar.computeIfAbsent(period.getCarId(), id -> new ArrayList<>()).add(period);
+        }
+
+        Map<Long, Bookings> bookings = new HashMap<>();
+        periodsByCar.forEach((carID, periods) -> bookings.put(carID, Bookings.of(periods)));
+
+        synchronized (this) {
+            replace(bookings);
+            pendingChanges.forEach(Runnable::run);
+            pendingChanges = null;
+        }
+    }
+
+    // Bookings of every car are replaced one by one, so readers see either the old or the new bookings of a car
+    private void replace(Map<Long, Bookings> bookings) {
+        bookingsByCar.keySet().retainAll(bookings.keySet());
+        bookingsByCar.putAll(bookings);
+
+        carByRental.clear();
+        bookings.forEach((carID, carBookings) -> {
+            for (long rentalID : carBookings.rentalIDs) {
+                carByRental.put(rentalID, carID);
+            }
+        });
+        version++;
+    }
+
+    // Copy of the bookings for the snapshot file. Layout: the car count, then for every car its ID, the booking count
+    // and the rental ID, start and end day columns.
+    synchronized ByteBuffer toBuffer() {
+        int size = Integer.BYTES;
+        for (Bookings bookings : bookingsByCar.values()) {
+            size += Long.BYTES + Integer.BYTES + 3 * Long.BYTES * bookings.rentalIDs.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(bookingsByCar.size());
+        bookingsByCar.forEach((carID, bookings) -> {
+            buffer.putLong(carID);
+            buffer.putInt(bookings.rentalIDs.length);
+            SnapshotBuffers.putLongs(buffer, bookings.rentalIDs);
+            SnapshotBuffers.putLongs(buffer, bookings.starts);
+            SnapshotBuffers.putLongs(buffer, bookings.ends);
+        });
+
+        return buffer.flip();
+    }
+
+    synchronized void readFrom(ByteBuffer buffer) {
+        Map<Long, Bookings> bookings = new HashMap<>();
+        int cars = buffer.getInt();
+
+        for (int i = 0; i < cars; i++) {
+            long carID = buffer.getLong();
+            int length = buffer.getInt();
+            long[] rentalIDs = SnapshotBuffers.getLongs(buffer, length);
+            long[] starts = SnapshotBuffers.getLongs(buffer, length);
+            long[] ends = SnapshotBuffers.getLongs(buffer, length);
+            bookings.put(carID, new Bookings(rentalIDs, starts, ends, Bookings.prefixMax(ends)));
+        }
+
+        replace(bookings);
+    }
+
+    // Increases with every change, tells whether the bookings have to be saved again
+    synchronized long getVersion() {
+        return version;
+    }
+
+    public static boolean isBlocking(RentalStatusEnum status) {
+        return BLOCKING_STATUSES.contains(status);
+    }
+
+    // Called inside the transaction changing the rental, the booking is only applied once it has committed
+    public void put(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        afterCommit(() -> putNow(carID, rentalID, startDate, endDate));
+    }
+
+    private synchronized void putNow(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        apply(carID, rentalID, startDate, endDate);
+        if(pendingChanges != null) {
+            pendingChanges.add(() -> apply(carID, rentalID, startDate, endDate));
+        }
+    }
+
+    private void apply(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        version++;
+        Long previousCarID = carByRental.put(rentalID, carID);
+        if(previousCarID != null && !previousCarID.equals(carID)) {
+            bookingsByCar.computeIfPresent(previousCarID, (id, bookings) -> bookings.without(rentalID));
+        }
+
+        bookingsByCar.compute(carID, (id, bookings) ->
+                (bookings == null ? Bookings.EMPTY : bookings).without(rentalID).with(rentalID, startDate.toEpochDay(), endDate.toEpochDay()));
+    }
+
+    public void remove(Long rentalID) {
+        afterCommit(() -> removeNow(rentalID));
+    }
+
+    private synchronized void removeNow(Long rentalID) {
+        apply(rentalID);
+        if(pendingChanges != null) {
+            pendingChanges.add(() -> apply(rentalID));
+        }
+    }
+
+    private void apply(Long rentalID) {
+        version++;
+        Long carID = carByRental.remove(rentalID);
+        if(carID != null) {
+            bookingsByCar.computeIfPresent(carID, (id, bookings) -> bookings.without(rentalID));
+        }
+    }
+
+    // A rolled back or failed commit leaves the bookings untouched, so they never hold a booking the database lacks
+    private static void afterCommit(Runnable action) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public boolean isFree(Long carID, LocalDate from, LocalDate to) {
+        Bookings bookings = bookingsByCar.get(carID);
+        return bookings == null || !bookings.overlaps(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Immutable, sorted by start day. maxEnds[i] is the latest end day among the first i + 1 bookings,
+    // which lets an overlap check be answered with a single binary search even if bookings overlap each other.
+    private static final class Bookings {
+        private static final Bookings EMPTY = new Bookings(new long[0], new long[0], new long[0], new long[0]);
+
+        private final long[] rentalIDs;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] maxEnds;
+
+        private Bookings(long[] rentalIDs, long[] starts, long[] ends, long[] maxEnds) {
+            this.rentalIDs = rentalIDs;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = maxEnds;
+        }
+
+        private static Bookings of(List<RentalPeriod> periods) {
+            List<RentalPeriod> sorted = new ArrayList<>(periods);
+            sorted.sort(Comparator.comparing(RentalPeriod::getStartDate));
+
+            long[] rentalIDs = new long[sorted.size()];
+            long[] starts = new long[sorted.size()];
+            long[] ends = new long[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                rentalIDs[i] = sorted.get(i).getId();
+                starts[i] = sorted.get(i).getStartDate().toEpochDay();
+                ends[i] = sorted.get(i).getEndDate().toEpochDay();
+            }
+
+            return new Bookings(rentalIDs, starts, ends, prefixMax(ends));
+        }
+
+        private Bookings with(long rentalID, long start, long end) {
+            int position = upperBound(start);
+            int length = starts.length + 1;
+
+            long[] newRentalIDs = new long[length];
+            long[] newStarts = new long[length];
+            long[] newEnds = new long[length];
+            insert(rentalIDs, newRentalIDs, position, rentalID);
+            insert(starts, newStarts, position, start);
+            insert(ends, newEnds, position, end);
+
+            return new Bookings(newRentalIDs, newStarts, newEnds, prefixMax(newEnds));
+        }
+
+        private Bookings without(long rentalID) {
+            for (int i = 0; i < rentalIDs.length; i++) {
+                if(rentalIDs[i] == rentalID) {
+                    long[] newEnds = remove(ends, i);
+                    return new Bookings(remove(rentalIDs, i), remove(starts, i), newEnds, prefixMax(newEnds));
+                }
+            }
+
+            return this;
+        }
+
+        private boolean overlaps(long from, long to) {
+            // Last booking starting on or before the end of the requested range
+            int last = upperBound(to) - 1;
+            return last >= 0 && maxEnds[last] >= from;
+        }
+
+        private int upperBound(long day) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if(starts[middle] <= day) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        private static long[] prefixMax(long[] values) {
+            long[] result = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = i == 0 ? values[i] : Math.max(result[i - 1], values[i]);
+            }
+
+            return result;
+        }
+
+        private static void insert(long[] source, long[] target, int position, long value) {
+            System.arraycopy(source, 0, target, 0, position);
+            target[position] = value;
+            System.arraycopy(source, position, target, position + 1, source.length - position);
+        }
+
+        private static long[] remove(long[] source, int position) {
+            long[] target = new long[source.length - 1];
+            System.arraycopy(source, 0, target, 0, position);
+            System.arraycopy(source, position + 1, target, position, source.length - position - 1);
+            return target;
+        }
+    }
+}
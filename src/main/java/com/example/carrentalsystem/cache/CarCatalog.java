@@ -0,0 +1,146 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.CatalogChange;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.CatalogChangesResponse;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.example.carrentalsystem.repositories.CatalogChangeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Catalog reads are answered from an immutable CatalogSnapshot without touching the database.
+// Committed car changes build a new snapshot that replaces the current one, readers never wait for a writer.
+// Loaded on startup by CatalogSnapshotFile, either from the database or from the snapshot file.
+// Every car change is recorded in the catalog_changes table by the transaction making it, and each node applies the
+// recorded changes after its version. Catalog versions are the same on every node and survive restarts.
+@Component
+public class CarCatalog {
+    // Above this many changed cars the whole catalog is read again instead of the single rows
+    private static final int MAX_REFRESHED_CARS = 1000;
+
+    private final CarRepository carRepository;
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.EMPTY);
+    private final CatalogChangeFeed changeFeed;
+
+    // Raised after every replacement of the snapshot, including full loads that keep the version
+    private volatile long revision;
+
+    public CarCatalog(CarRepository carRepository, CatalogChangeRepository catalogChangeRepository, PlatformTransactionManager transactionManager,
+                      @Value("${crs.app.catalog.changeFeedSize}") int changeFeedSize) {
+        this.carRepository = carRepository;
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.changeFeed = new CatalogChangeFeed(changeFeedSize);
+
+        // Refreshes run after the writing transaction has committed, so they read in a transaction of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // The version and the cars are read in one transaction, so the snapshot is exactly the state of that version.
+    // Nothing tells which cars differ from the previous snapshot, so clients of the change feed have to resync.
+    public synchronized void load() {
+        Loaded loaded = transactionTemplate.execute(status ->
+                new Loaded(catalogChangeRepository.findVersion(), carRepository.findAllSummaries()));
+
+        replace(CatalogSnapshot.of(loaded.cars()));
+        changeFeed.reset(loaded.version());
+    }
+
+    // Changes committed after the saved version are applied by the next refresh
+    synchronized void restore(CatalogSnapshot restored, long version) {
+        replace(restored);
+        changeFeed.reset(version);
+    }
+
+    private void replace(CatalogSnapshot replacement) {
+        snapshot.set(replacement);
+        revision++;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    // The snapshot is replaced before the version moves, the snapshot read after the version is at least as new
+    public long getVersion() {
+        return changeFeed.getVersion();
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    // Runs inside the transaction that changed the cars, a rolled back change is never recorded
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void recordChange(CarChangedEvent event) {
+        if(!event.carIDs().isEmpty()){
+            catalogChangeRepository.record(event.carIDs());
+        }
+    }
+
+    // Changes of this node are applied as soon as they commit, changes of other nodes by the periodic refresh
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCarChanged(CarChangedEvent event) {
+        refresh();
+    }
+
+    // Writers are serialized, so a refresh always starts from the snapshot of the previous one
+    @Scheduled(fixedDelayString = "${crs.app.catalog.refreshInterval}", initialDelayString = "${crs.app.catalog.refreshInterval}")
+    public synchronized void refresh() {
+        long version = changeFeed.getVersion();
+        if(catalogChangeRepository.findVersion() == version){
+            return;
+        }
+
+        // The changes right after the version were purged, or too many cars changed to refresh them one by one
+        List<CatalogChange> changes = catalogChangeRepository.findSince(version, MAX_REFRESHED_CARS + 1);
+        if(changes.isEmpty() || changes.get(0).getVersion() != version + 1 || changes.size() > MAX_REFRESHED_CARS){
+            load();
+            return;
+        }
+
+        Map<Long, List<Long>> carsByVersion = new LinkedHashMap<>();
+        changes.forEach(change -> carsByVersion.computeIfAbsent(change.getVersion(), v -> new ArrayList<>()).add(change.getCarId()));
+        List<Long> carIDs = changes.stream().map(CatalogChange::getCarId).distinct().sorted().toList();
+
+        replace(snapshot.get().with(carIDs, transactionTemplate.execute(status -> carRepository.findSummariesByIdIn(carIDs))));
+        carsByVersion.forEach(changeFeed::record);
+    }
+
+    // A client that already saw a newer version on another node gets the changes once this node has caught up
+    public CatalogChangesResponse findChanges(long since) {
+        if(since > changeFeed.getVersion()){
+            refresh();
+        }
+
+        Optional<CatalogChangeFeed.Changes> changes = changeFeed.since(since);
+        if(changes.isEmpty()){
+            return new CatalogChangesResponse(changeFeed.getVersion(), true, List.of(), List.of());
+        }
+
+        CatalogSnapshot current = snapshot.get();
+        List<CarSummaryResponse> cars = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+
+        for (Long carID : changes.get().carIDs()) {
+            current.findById(carID).ifPresentOrElse(cars::add, () -> deleted.add(carID));
+        }
+
+        return new CatalogChangesResponse(changes.get().version(), false, cars, deleted);
+    }
+
+    private record Loaded(long version, List<CarSummaryResponse> cars) {
+    }
+}
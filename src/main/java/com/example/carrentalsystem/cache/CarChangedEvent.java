@@ -0,0 +1,12 @@
+package com.example.carrentalsystem.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+// Published inside the transaction that added, changed or removed the cars. Caches holding car data
+// listen with @TransactionalEventListener, so they only see changes that were committed.
+public record CarChangedEvent(List<Long> carIDs) {
+    public static CarChangedEvent of(Long carID) {
+        return new CarChangedEvent(Collections.singletonList(carID));
+    }
+}
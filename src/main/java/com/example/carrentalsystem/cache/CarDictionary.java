@@ -0,0 +1,167 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.Brand;
+import com.example.carrentalsystem.models.CarModel;
+import com.example.carrentalsystem.models.DictionaryEntry;
+import com.example.carrentalsystem.payload.response.NameSuggestion;
+import com.example.carrentalsystem.repositories.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Brand and car model names with their IDs. Each entry counts the cars using it, so adding or removing
+// a car costs a single write for each name and an entry is deleted once its last car is gone.
+@Component
+public class CarDictionary implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(CarDictionary.class);
+
+    private final CarRepository carRepository;
+    private final Entries<Brand> brands;
+    private final Entries<CarModel> models;
+
+    public CarDictionary(BrandRepository brandRepository, CarModelRepository carModelRepository, CarRepository carRepository,
+                         NameSuggestIndex suggestIndex) {
+        this.carRepository = carRepository;
+        this.brands = new Entries<>(brandRepository, Brand::new, suggestIndex, NameSuggestion.TYPE_BRAND);
+        this.models = new Entries<>(carModelRepository, CarModel::new, suggestIndex, NameSuggestion.TYPE_MODEL);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        load();
+    }
+
+    // Counts are checked against the cars table on startup, fixing any drift and removing unused names
+    public void load() {
+        brands.load(carRepository.countCarsByBrand());
+        models.load(carRepository.countCarsByModel());
+    }
+
+    public Brand acquireBrand(String name) {
+        return brands.acquire(name, 1);
+    }
+
+    // Registers several new cars of the same brand with one write, used by the bulk import
+    public Brand acquireBrand(String name, int cars) {
+        return brands.acquire(name, cars);
+    }
+
+    public CarModel acquireModel(String name) {
+        return models.acquire(name, 1);
+    }
+
+    public CarModel acquireModel(String name, int cars) {
+        return models.acquire(name, cars);
+    }
+
+    // The car must no longer reference the brand in the database (flushed) before it is released
+    public void releaseBrand(Brand brand) {
+        brands.release(brand);
+    }
+
+    public void releaseModel(CarModel model) {
+        models.release(model);
+    }
+
+    // The map is only changed after commit, so a rolled back transaction never leaves a wrong ID behind
+    private static void afterCommit(Runnable action) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class Entries<T extends DictionaryEntry> {
+        private final DictionaryRepository<T> repository;
+        private final Function<String, T> factory;
+        private final NameSuggestIndex suggestIndex;
+        private final String type;
+        private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+        Entries(DictionaryRepository<T> repository, Function<String, T> factory, NameSuggestIndex suggestIndex, String type) {
+            this.repository = repository;
+            this.factory = factory;
+            this.suggestIndex = suggestIndex;
+            this.type = type;
+        }
+
+        void load(List<CarCount> carCounts) {
+            Map<Long, Long> cars = new HashMap<>();
+            carCounts.forEach(count -> cars.put(count.getId(), count.getCars()));
+
+            ids.clear();
+            for (T entry : repository.findAll()) {
+                int count = cars.getOrDefault(entry.getId(), 0L).intValue();
+
+                if(count != entry.getCarCount()){
+                    logger.info("Correcting car count of {} from {} to {}", entry.getName(), entry.getCarCount(), count);
+                    repository.setCarCount(entry.getId(), count);
+                }
+
+                if(count == 0){
+                    repository.deleteIfUnused(entry.getId());
+                } else {
+                    ids.put(entry.getName(), entry.getId());
+                }
+            }
+
+            suggestIndex.replace(type, ids.keySet());
+        }
+
+        T acquire(String name, int cars) {
+            Long id = ids.get(name);
+            if(id != null && repository.addCars(id, cars) > 0){
+                return repository.getReferenceById(id);
+            }
+
+            // Name not used by any car yet, or removed since it was cached
+            T existing = repository.findByName(name);
+            if(existing != null){
+                repository.addCars(existing.getId(), cars);
+                ids.put(name, existing.getId());
+                suggestIndex.add(type, name);
+                return existing;
+            }
+
+            // Written right away, table generated IDs no longer insert on save and the bulk import references the row
+            // from plain JDBC statements that Hibernate does not flush before
+            T entry = factory.apply(name);
+            entry.setCarCount(cars);
+            T saved = repository.saveAndFlush(entry);
+            afterCommit(() -> {
+                ids.put(name, saved.getId());
+                suggestIndex.add(type, name);
+            });
+            return saved;
+        }
+
+        void release(T entry) {
+            // The count loaded with the car tells whether this is probably the last car,
+            // the delete itself only happens if the database agrees
+            if(entry.getCarCount() <= 1 && repository.deleteIfUnused(entry.getId()) > 0){
+                afterCommit(() -> {
+                    ids.remove(entry.getName(), entry.getId());
+                    suggestIndex.remove(type, entry.getName());
+                });
+                return;
+            }
+
+            repository.addCars(entry.getId(), -1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.carrentalsystem.cache;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// Ring buffer of the IDs of changed cars, each stored with the catalog version that changed it. Once the buffer is
+// full the oldest entries are overwritten, clients asking for changes older than that have to download everything.
+final class CatalogChangeFeed {
+    private final long[] versions;
+    private final long[] carIDs;
+    private int next;
+    private int size;
+
+    // Only changed while holding the lock, read without it by CarCatalog
+    private volatile long version;
+    // Every change made after this version is still in the buffer
+    private long retainedSince;
+
+    // Versions are taken from the catalog_changes table, so they are the same on every node and keep increasing
+    // across restarts
+    CatalogChangeFeed(int capacity) {
+        this.versions = new long[capacity];
+        this.carIDs = new long[capacity];
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    synchronized void record(long changeVersion, List<Long> changedIDs) {
+        version = changeVersion;
+
+        for (Long carID : changedIDs) {
+            if(size == versions.length){
+                retainedSince = Math.max(retainedSince, versions[next]);
+            } else {
+                size++;
+            }
+
+            versions[next] = changeVersion;
+            carIDs[next] = carID;
+            next = (next + 1) % versions.length;
+        }
+    }
+
+    // The whole catalog was replaced without knowing which cars changed, clients of older versions have to download it again
+    synchronized void reset(long loadedVersion) {
+        version = loadedVersion;
+        retainedSince = loadedVersion;
+        size = 0;
+        next = 0;
+    }
+
+    // Empty when the changes since the given version are no longer (or not yet) known
+    synchronized Optional<Changes> since(long since) {
+        if(since < retainedSince || since > version){
+            return Optional.empty();
+        }
+
+        Set<Long> changedIDs = new LinkedHashSet<>();
+        for (int i = 1; i <= size; i++) {
+            int position = Math.floorMod(next - i, versions.length);
+            if(versions[position] <= since){
+                break;
+            }
+
+            changedIDs.add(carIDs[position]);
+        }
+
+        return Optional.of(new Changes(version, changedIDs));
+    }
+
+    record Changes(long version, Set<Long> carIDs) {
+    }
+}
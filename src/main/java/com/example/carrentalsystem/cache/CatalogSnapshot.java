@@ -0,0 +1,340 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.payload.request.CarCursor;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.LongPredicate;
+
+// Immutable column store of all cars. Row i of every array describes the same car and rows are sorted by ID,
+// priceOrder lists the rows by price and then ID. Brand, model and capacity values are kept once in a dictionary
+// and referenced by index. Scans only read the arrays, a CarSummaryResponse is created for returned cars only.
+public final class CatalogSnapshot {
+    private static final FuelTypeEnum[] FUEL_TYPES = FuelTypeEnum.values();
+
+    public static final CatalogSnapshot EMPTY = new Builder(0, List.of()).build();
+
+    private final long[] ids;
+    private final int[] brands;
+    private final int[] models;
+    private final int[] years;
+    private final int[] mileages;
+    private final byte[] fuelTypes;
+    private final int[] horsePowers;
+    private final int[] capacities;
+    private final int[] prices;
+    private final boolean[] available;
+    private final long[] imageIDs;
+    private final int[] priceOrder;
+    private final String[] dictionary;
+
+    private CatalogSnapshot(long[] ids, int[] brands, int[] models, int[] years, int[] mileages, byte[] fuelTypes, int[] horsePowers,
+                            int[] capacities, int[] prices, boolean[] available, long[] imageIDs, int[] priceOrder, String[] dictionary) {
+        this.ids = ids;
+        this.brands = brands;
+        this.models = models;
+        this.years = years;
+        this.mileages = mileages;
+        this.fuelTypes = fuelTypes;
+        this.horsePowers = horsePowers;
+        this.capacities = capacities;
+        this.prices = prices;
+        this.available = available;
+        this.imageIDs = imageIDs;
+        this.priceOrder = priceOrder;
+        this.dictionary = dictionary;
+    }
+
+    // Cars must be sorted by ID
+    public static CatalogSnapshot of(List<CarSummaryResponse> cars) {
+        Builder builder = new Builder(cars.size(), List.of());
+        cars.forEach(builder::add);
+        return builder.build();
+    }
+
+    // Copy of this snapshot in which the given cars are replaced by their current rows. Changed cars without a row
+    // were deleted. Both lists must be sorted by ID. Dictionary values of removed cars are kept until the next full load.
+    public CatalogSnapshot with(List<Long> changedIDs, List<CarSummaryResponse> cars) {
+        long[] changed = changedIDs.stream().mapToLong(Long::longValue).sorted().toArray();
+        Builder builder = new Builder(ids.length + cars.size(), Arrays.asList(dictionary));
+        // Row in the new snapshot of every row of this one (-1 when changed), and the rows of the changed cars
+        int[] keptRows = new int[ids.length];
+        int[] changedRows = new int[cars.size()];
+        int next = 0;
+
+        for (int row = 0; row < ids.length; row++) {
+            while (next < cars.size() && cars.get(next).getId() < ids[row]) {
+                changedRows[next] = builder.size;
+                builder.add(cars.get(next++));
+            }
+
+            if(Arrays.binarySearch(changed, ids[row]) < 0){
+                keptRows[row] = builder.size;
+                builder.copy(this, row);
+            } else {
+                keptRows[row] = -1;
+            }
+        }
+
+        while (next < cars.size()) {
+            changedRows[next] = builder.size;
+            builder.add(cars.get(next++));
+        }
+
+        return builder.build(mergeByPrice(keptRows, changedRows, builder.prices, builder.size));
+    }
+
+    // Kept rows stay in the price order of this snapshot, only the changed cars are sorted and merged into it.
+    // Rows of the new snapshot are in ID order too, so comparing rows compares IDs.
+    private int[] mergeByPrice(int[] keptRows, int[] changedRows, int[] newPrices, int size) {
+        int[] changedOrder = sortByPrice(newPrices, changedRows);
+        int[] order = new int[size];
+        int position = 0;
+        int next = 0;
+
+        for (int previousRow : priceOrder) {
+            int row = keptRows[previousRow];
+            if(row < 0){
+                continue;
+            }
+
+            while (next < changedOrder.length && (newPrices[changedOrder[next]] < newPrices[row]
+                    || (newPrices[changedOrder[next]] == newPrices[row] && changedOrder[next] < row))) {
+                order[position++] = changedOrder[next++];
+            }
+
+            order[position++] = row;
+        }
+
+        while (next < changedOrder.length) {
+            order[position++] = changedOrder[next++];
+        }
+
+        return order;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    // Layout: the dictionary, the row count, then every column one after another
+    int serializedSize() {
+        return SnapshotBuffers.stringsSize(dictionary) + Integer.BYTES + ids.length * (2 * Long.BYTES + 8 * Integer.BYTES + 2);
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        SnapshotBuffers.putStrings(buffer, dictionary);
+        buffer.putInt(ids.length);
+        SnapshotBuffers.putLongs(buffer, ids);
+        SnapshotBuffers.putInts(buffer, brands);
+        SnapshotBuffers.putInts(buffer, models);
+        SnapshotBuffers.putInts(buffer, years);
+        SnapshotBuffers.putInts(buffer, mileages);
+        buffer.put(fuelTypes);
+        SnapshotBuffers.putInts(buffer, horsePowers);
+        SnapshotBuffers.putInts(buffer, capacities);
+        SnapshotBuffers.putInts(buffer, prices);
+        SnapshotBuffers.putBooleans(buffer, available);
+        SnapshotBuffers.putLongs(buffer, imageIDs);
+        SnapshotBuffers.putInts(buffer, priceOrder);
+    }
+
+    static CatalogSnapshot readFrom(ByteBuffer buffer) {
+        String[] dictionary = SnapshotBuffers.getStrings(buffer);
+        int size = buffer.getInt();
+
+        return new CatalogSnapshot(
+                SnapshotBuffers.getLongs(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getBytes(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                SnapshotBuffers.getBooleans(buffer, size),
+                SnapshotBuffers.getLongs(buffer, size),
+                SnapshotBuffers.getInts(buffer, size),
+                dictionary
+        );
+    }
+
+    public Optional<CarSummaryResponse> findById(long carID) {
+        int row = Arrays.binarySearch(ids, carID);
+        return row < 0 ? Optional.empty() : Optional.of(toResponse(row));
+    }
+
+    public List<CarSummaryResponse> findAvailable() {
+        List<CarSummaryResponse> cars = new ArrayList<>();
+        for (int row = 0; row < ids.length; row++) {
+            if(available[row]){
+                cars.add(toResponse(row));
+            }
+        }
+
+        return cars;
+    }
+
+    // Up to limit available cars after the cursor, in the order of its sort key, which the filter accepts.
+    // The first page sorted by price is the top-k cheapest cars.
+    public List<CarSummaryResponse> findAvailableAfter(CarCursor cursor, int limit, LongPredicate filter) {
+        boolean byPrice = CarCursor.SORT_PRICE.equals(cursor.getSort());
+        int[] matches = new int[limit];
+        int found = 0;
+
+        int position = byPrice ? firstAfterPrice(cursor.getLastPrice(), cursor.getLastId()) : firstAfterId(cursor.getLastId());
+        for (; position < ids.length && found < limit; position++) {
+            int row = byPrice ? priceOrder[position] : position;
+
+            if(available[row] && filter.test(ids[row])){
+                matches[found++] = row;
+            }
+        }
+
+        List<CarSummaryResponse> cars = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            cars.add(toResponse(matches[i]));
+        }
+
+        return cars;
+    }
+
+    private int firstAfterId(long lastId) {
+        int row = Arrays.binarySearch(ids, lastId);
+        return row < 0 ? -row - 1 : row + 1;
+    }
+
+    // First position in priceOrder whose (price, ID) comes after the given pair
+    private int firstAfterPrice(int lastPrice, long lastId) {
+        int low = 0;
+        int high = priceOrder.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int row = priceOrder[middle];
+
+            if(prices[row] < lastPrice || (prices[row] == lastPrice && ids[row] <= lastId)){
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private CarSummaryResponse toResponse(int row) {
+        return new CarSummaryResponse(ids[row], dictionary[brands[row]], dictionary[models[row]], years[row], mileages[row],
+                FUEL_TYPES[fuelTypes[row]], horsePowers[row], dictionary[capacities[row]], prices[row], available[row],
+                imageIDs[row] == 0 ? null : imageIDs[row]);
+    }
+
+    // Rows are in ID order, so sorting (price, row) pairs packed into longs orders by price and then ID without boxing
+    private static int[] sortByPrice(int[] prices, int[] rows) {
+        long[] keys = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            keys[i] = ((long) prices[rows[i]] << 32) | rows[i];
+        }
+
+        Arrays.sort(keys);
+
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+
+        return order;
+    }
+
+    private static final class Builder {
+        private final long[] ids;
+        private final int[] brands;
+        private final int[] models;
+        private final int[] years;
+        private final int[] mileages;
+        private final byte[] fuelTypes;
+        private final int[] horsePowers;
+        private final int[] capacities;
+        private final int[] prices;
+        private final boolean[] available;
+        private final long[] imageIDs;
+        private final List<String> dictionary;
+        private final Map<String, Integer> dictionaryIndexes = new HashMap<>();
+        private int size;
+
+        private Builder(int capacity, List<String> dictionary) {
+            this.ids = new long[capacity];
+            this.brands = new int[capacity];
+            this.models = new int[capacity];
+            this.years = new int[capacity];
+            this.mileages = new int[capacity];
+            this.fuelTypes = new byte[capacity];
+            this.horsePowers = new int[capacity];
+            this.capacities = new int[capacity];
+            this.prices = new int[capacity];
+            this.available = new boolean[capacity];
+            this.imageIDs = new long[capacity];
+            this.dictionary = new ArrayList<>(dictionary);
+
+            for (int i = 0; i < dictionary.size(); i++) {
+                dictionaryIndexes.put(dictionary.get(i), i);
+            }
+        }
+
+        private void add(CarSummaryResponse car) {
+            ids[size] = car.getId();
+            brands[size] = index(car.getBrand());
+            models[size] = index(car.getModel());
+            years[size] = car.getYear();
+            mileages[size] = car.getMileage();
+            fuelTypes[size] = (byte) car.getFuelType().ordinal();
+            horsePowers[size] = car.getHorsePower();
+            capacities[size] = index(car.getCapacity());
+            prices[size] = car.getPrice();
+            available[size] = car.isAvailable();
+            imageIDs[size] = car.getImageID() == null ? 0 : car.getImageID();
+            size++;
+        }
+
+        // The builder starts with the dictionary of the snapshot, so its indexes stay valid
+        private void copy(CatalogSnapshot snapshot, int row) {
+            ids[size] = snapshot.ids[row];
+            brands[size] = snapshot.brands[row];
+            models[size] = snapshot.models[row];
+            years[size] = snapshot.years[row];
+            mileages[size] = snapshot.mileages[row];
+            fuelTypes[size] = snapshot.fuelTypes[row];
+            horsePowers[size] = snapshot.horsePowers[row];
+            capacities[size] = snapshot.capacities[row];
+            prices[size] = snapshot.prices[row];
+            available[size] = snapshot.available[row];
+            imageIDs[size] = snapshot.imageIDs[row];
+            size++;
+        }
+
+        private int index(String value) {
+            return dictionaryIndexes.computeIfAbsent(value, key -> {
+                dictionary.add(key);
+                return dictionary.size() - 1;
+            });
+        }
+
+        private CatalogSnapshot build() {
+            int[] rows = new int[size];
+            for (int row = 0; row < size; row++) {
+                rows[row] = row;
+            }
+
+            return build(sortByPrice(prices, rows));
+        }
+
+        private CatalogSnapshot build(int[] priceOrder) {
+            return new CatalogSnapshot(Arrays.copyOf(ids, size), Arrays.copyOf(brands, size), Arrays.copyOf(models, size),
+                    Arrays.copyOf(years, size), Arrays.copyOf(mileages, size), Arrays.copyOf(fuelTypes, size),
+                    Arrays.copyOf(horsePowers, size), Arrays.copyOf(capacities, size), Arrays.copyOf(prices, size),
+                    Arrays.copyOf(available, size), Arrays.copyOf(imageIDs, size), priceOrder, dictionary.toArray(new String[0]));
+        }
+    }
+}
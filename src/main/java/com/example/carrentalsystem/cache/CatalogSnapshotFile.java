@@ -0,0 +1,191 @@
+package com.example.carrentalsystem.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+// The catalog snapshot and the bookings of the availability index are saved to a memory mapped file, so a restarted
+// node answers catalog reads right away instead of loading everything from the database first. The restored state is
+// then reconciled with the database in the background.
+@Component
+public class CatalogSnapshotFile implements InitializingBean, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotFile.class);
+
+    private static final int MAGIC = 0x43525343;
+    // Raised whenever the layout changes, files written by another version are ignored
+    private static final int FORMAT_VERSION = 2;
+    // Magic, format version, save time, catalog version, body size and body checksum
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 4 * Long.BYTES;
+    private static final int CATALOG_VERSION_OFFSET = 2 * Integer.BYTES + Long.BYTES;
+    private static final int BODY_SIZE_OFFSET = 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int CHECKSUM_OFFSET = 2 * Integer.BYTES + 3 * Long.BYTES;
+    private static final long RECONCILE_RETRY_MS = 30_000;
+
+    private final CarCatalog catalog;
+    private final CarAvailabilityIndex availabilityIndex;
+    private final TaskScheduler taskScheduler;
+    private final Path file;
+
+    // State written last, the file is not rewritten while neither has changed. Guarded by this.
+    private CatalogSnapshot savedSnapshot;
+    private long savedVersion = -1;
+    // Next or running reconciliation, cancelled on shutdown. Guarded by this.
+    private ScheduledFuture<?> reconciliation;
+    private boolean stopped;
+
+    public CatalogSnapshotFile(CarCatalog catalog, CarAvailabilityIndex availabilityIndex, TaskScheduler taskScheduler,
+                               @Value("${crs.app.catalog.snapshotFile}") Path file) {
+        this.catalog = catalog;
+        this.availabilityIndex = availabilityIndex;
+        this.taskScheduler = taskScheduler;
+        this.file = file;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Optional<Instant> savedAt = restore();
+        if(savedAt.isEmpty()){
+            catalog.load();
+            availabilityIndex.load();
+            return;
+        }
+
+        logger.info("Restored {} cars saved at {}, reconciling with the database in the background", catalog.getSnapshot().size(), savedAt.get());
+
+        scheduleReconciliation(Instant.now());
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            stopped = true;
+            if(reconciliation != null){
+                reconciliation.cancel(false);
+            }
+        }
+
+        save();
+    }
+
+    // The catalog applies the changes recorded since the saved version, and loads in full when they were purged.
+    // Rentals have no such log, so bookings are read again in full. Both leave the restored state in place until they
+    // are done, and changes committed meanwhile are applied on top of what they read.
+    private void reconcile() {
+        try {
+            catalog.refresh();
+            availabilityIndex.load();
+            logger.info("Catalog reconciled with the database, {} cars", catalog.getSnapshot().size());
+        } catch (RuntimeException e) {
+            logger.warn("Catalog could not be reconciled with the database, retrying", e);
+            scheduleReconciliation(Instant.now().plusMillis(RECONCILE_RETRY_MS));
+        }
+    }
+
+    // Runs on the task scheduler, which is shut down with the application context
+    private synchronized void scheduleReconciliation(Instant startTime) {
+        if(!stopped){
+            reconciliation = taskScheduler.schedule(this::reconcile, startTime);
+        }
+    }
+
+    // Returns the time the restored state was saved, or nothing when there is no usable file
+    public synchronized Optional<Instant> restore() {
+        if(!Files.isRegularFile(file)){
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION){
+                logger.warn("Catalog snapshot {} has an unknown format, loading from the database", file);
+                return Optional.empty();
+            }
+
+            long bodySize = buffer.getLong(BODY_SIZE_OFFSET);
+            if(HEADER_SIZE + bodySize != buffer.limit() || checksum(buffer, (int) bodySize) != buffer.getLong(CHECKSUM_OFFSET)){
+                logger.warn("Catalog snapshot {} is damaged, loading from the database", file);
+                return Optional.empty();
+            }
+
+            buffer.position(HEADER_SIZE);
+            CatalogSnapshot snapshot = CatalogSnapshot.readFrom(buffer);
+            availabilityIndex.readFrom(buffer);
+            catalog.restore(snapshot, buffer.getLong(CATALOG_VERSION_OFFSET));
+
+            savedSnapshot = snapshot;
+            savedVersion = availabilityIndex.getVersion();
+            return Optional.of(Instant.ofEpochMilli(buffer.getLong(2 * Integer.BYTES)));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Catalog snapshot {} could not be read, loading from the database", file, e);
+            return Optional.empty();
+        }
+    }
+
+    // Written to a temporary file first and moved over the previous one, a crash never leaves a half written snapshot
+    @Scheduled(fixedDelayString = "${crs.app.catalog.snapshotInterval}", initialDelayString = "${crs.app.catalog.snapshotInterval}")
+    public synchronized void save() {
+        // Read before the snapshot, which is then at least as new. Changes already in it are applied again on restore.
+        long catalogVersion = catalog.getVersion();
+        CatalogSnapshot snapshot = catalog.getSnapshot();
+        long version = availabilityIndex.getVersion();
+        if(snapshot == savedSnapshot && version == savedVersion){
+            return;
+        }
+
+        ByteBuffer bookings = availabilityIndex.toBuffer();
+        int bodySize = snapshot.serializedSize() + bookings.remaining();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(temporary.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + bodySize);
+
+                buffer.position(HEADER_SIZE);
+                snapshot.writeTo(buffer);
+                buffer.put(bookings);
+
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(Integer.BYTES, FORMAT_VERSION);
+                buffer.putLong(2 * Integer.BYTES, System.currentTimeMillis());
+                buffer.putLong(CATALOG_VERSION_OFFSET, catalogVersion);
+                buffer.putLong(BODY_SIZE_OFFSET, bodySize);
+                buffer.putLong(CHECKSUM_OFFSET, checksum(buffer, bodySize));
+                buffer.force();
+            }
+
+            Files.move(temporary, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            savedSnapshot = snapshot;
+            savedVersion = version;
+        } catch (IOException e) {
+            logger.warn("Catalog snapshot {} could not be saved", file, e);
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer, int bodySize) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, bodySize));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.payload.response.ImageCacheStatisticsResponse;
+import com.example.carrentalsystem.storage.ImageSize;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Least recently used cache of image bytes kept in direct buffers, outside the garbage collected heap.
+// The JVM must allow at least crs.app.images.cacheSize of direct memory (-XX:MaxDirectMemorySize).
+@Component
+public class ImageByteCache {
+    private final long capacity;
+    private final long maxEntrySize;
+
+    // Access ordered, the eldest entry is the least recently used one. Guarded by this.
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageByteCache(@Value("${crs.app.images.cacheSize}") DataSize capacity,
+                          @Value("${crs.app.images.cacheMaxEntrySize}") DataSize maxEntrySize) {
+        this.capacity = capacity.toBytes();
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), this.capacity);
+    }
+
+    // Content is addressed by hash, so a key always refers to the same bytes
+    public static String key(String contentHash, ImageSize size) {
+        return size == ImageSize.ORIGINAL ? contentHash : contentHash + "-" + size.getName();
+    }
+
+    // Returns a read-only view of the cached bytes, loading them from the resource on a miss.
+    // Returns null when the image is too large to be cached.
+    public ByteBuffer get(String key, Resource resource) throws IOException {
+        synchronized (this) {
+            ByteBuffer cached = entries.get(key);
+            if(cached != null){
+                hits.incrementAndGet();
+                return cached.asReadOnlyBuffer();
+            }
+        }
+
+        misses.incrementAndGet();
+
+        long length = resource.contentLength();
+        if(length > maxEntrySize){
+            return null;
+        }
+
+        // The channel reads straight into native memory, the bytes are never copied to the heap
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            while (buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0){
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+
+        return put(key, buffer).asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(String contentHash) {
+        for (ImageSize size : ImageSize.values()) {
+            ByteBuffer removed = entries.remove(key(contentHash, size));
+            if(removed != null){
+                usedBytes -= removed.capacity();
+            }
+        }
+    }
+
+    public synchronized ImageCacheStatisticsResponse getStatistics() {
+        return new ImageCacheStatisticsResponse(hits.get(), misses.get(), evictions.get(), entries.size(), usedBytes, capacity);
+    }
+
+    private synchronized ByteBuffer put(String key, ByteBuffer buffer) {
+        // Loaded concurrently by another request
+        ByteBuffer existing = entries.get(key);
+        if(existing != null){
+            return existing;
+        }
+
+        Iterator<ByteBuffer> eldest = entries.values().iterator();
+        while (usedBytes + buffer.capacity() > capacity && eldest.hasNext()) {
+            usedBytes -= eldest.next().capacity();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+
+        entries.put(key, buffer);
+        usedBytes += buffer.capacity();
+        return buffer;
+    }
+}
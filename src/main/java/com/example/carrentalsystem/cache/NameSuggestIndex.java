@@ -0,0 +1,199 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.payload.response.NameSuggestion;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// Type-ahead over the brand and model names of CarDictionary. Names are kept in a trie of their lower case form,
+// a query is matched against every prefix in the trie with a bounded edit distance, so "mersedes" still finds
+// "Mercedes-Benz". The trie is immutable and rebuilt when a name is added or removed, which only happens when the
+// first car of a brand or model is added or the last one is removed.
+@Component
+public class NameSuggestIndex {
+    private final Map<String, SortedSet<String>> namesByType = Map.of(
+            NameSuggestion.TYPE_BRAND, new TreeSet<>(),
+            NameSuggestion.TYPE_MODEL, new TreeSet<>());
+
+    private volatile Node root = Node.build(List.of(), 0, 0, 0);
+
+    // Replaces all names of a type, used when CarDictionary is loaded
+    public synchronized void replace(String type, Collection<String> names) {
+        namesByType.get(type).clear();
+        namesByType.get(type).addAll(names);
+        rebuild();
+    }
+
+    public synchronized void add(String type, String name) {
+        if(namesByType.get(type).add(name)){
+            rebuild();
+        }
+    }
+
+    public synchronized void remove(String type, String name) {
+        if(namesByType.get(type).remove(name)){
+            rebuild();
+        }
+    }
+
+    // Best matches first: fewest typos, then the shortest and alphabetically first name
+    public List<NameSuggestion> suggest(String query, int limit) {
+        String key = normalize(query);
+        if(key.isEmpty()){
+            return List.of();
+        }
+
+        Search search = new Search(key.toCharArray(), maxDistance(key.length()));
+        int[] firstRow = new int[key.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+
+        search.visit(root, firstRow, Integer.MAX_VALUE);
+
+        return search.matches.stream()
+                .sorted(Comparator.comparingInt(NameSuggestion::getDistance)
+                        .thenComparingInt(suggestion -> suggestion.getName().length())
+                        .thenComparing(NameSuggestion::getName)
+                        .thenComparing(NameSuggestion::getType))
+                .limit(limit)
+                .toList();
+    }
+
+    // Short queries must match exactly, a typo in two letters matches almost anything
+    private static int maxDistance(int length) {
+        if(length <= 2){
+            return 0;
+        }
+
+        return length <= 5 ? 1 : 2;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void rebuild() {
+        List<Entry> entries = new ArrayList<>();
+        namesByType.forEach((type, names) -> names.forEach(name -> entries.add(new Entry(normalize(name), new NameSuggestion(type, name, 0)))));
+        entries.sort(Comparator.comparing(Entry::key));
+
+        root = Node.build(entries, 0, entries.size(), 0);
+    }
+
+    private record Entry(String key, NameSuggestion suggestion) {
+    }
+
+    // Children are sorted by character. Names ending at a node are stored on it.
+    private static final class Node {
+        private final char[] characters;
+        private final Node[] children;
+        private final NameSuggestion[] names;
+
+        private Node(char[] characters, Node[] children, NameSuggestion[] names) {
+            this.characters = characters;
+            this.children = children;
+            this.names = names;
+        }
+
+        // Builds the node for entries[from, to), which share their first depth characters and are sorted by key
+        private static Node build(List<Entry> entries, int from, int to, int depth) {
+            int start = from;
+            while (start < to && entries.get(start).key.length() == depth) {
+                start++;
+            }
+
+            NameSuggestion[] names = new NameSuggestion[start - from];
+            for (int i = from; i < start; i++) {
+                names[i - from] = entries.get(i).suggestion;
+            }
+
+            List<Character> characters = new ArrayList<>();
+            List<Node> children = new ArrayList<>();
+            while (start < to) {
+                char character = entries.get(start).key.charAt(depth);
+                int end = start;
+                while (end < to && entries.get(end).key.charAt(depth) == character) {
+                    end++;
+                }
+
+                characters.add(character);
+                children.add(build(entries, start, end, depth + 1));
+                start = end;
+            }
+
+            char[] keys = new char[characters.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = characters.get(i);
+            }
+
+            return new Node(keys, children.toArray(new Node[0]), names);
+        }
+    }
+
+    // Walks the trie with one row of the Levenshtein matrix per depth. row[i] is the distance between the first i
+    // query characters and the prefix spelled by the path, so row[length] is the distance of the whole query.
+    private static final class Search {
+        private final char[] query;
+        private final int maxDistance;
+        private final List<NameSuggestion> matches = new ArrayList<>();
+
+        private Search(char[] query, int maxDistance) {
+            this.query = query;
+            this.maxDistance = maxDistance;
+        }
+
+        // best is the lowest distance of the query to the path or one of its prefixes
+        private void visit(Node node, int[] row, int best) {
+            best = Math.min(best, row[query.length]);
+
+            if(best <= maxDistance){
+                for (NameSuggestion name : node.names) {
+                    matches.add(new NameSuggestion(name.getType(), name.getName(), best));
+                }
+            }
+
+            for (int child = 0; child < node.children.length; child++) {
+                int[] next = next(row, node.characters[child]);
+
+                // Once no cell is within the limit, longer paths only get further away from the query
+                if(min(next) <= maxDistance){
+                    visit(node.children[child], next, best);
+                } else if(best <= maxDistance){
+                    collect(node.children[child], best);
+                }
+            }
+        }
+
+        private void collect(Node node, int distance) {
+            for (NameSuggestion name : node.names) {
+                matches.add(new NameSuggestion(name.getType(), name.getName(), distance));
+            }
+
+            for (Node child : node.children) {
+                collect(child, distance);
+            }
+        }
+
+        private int[] next(int[] row, char character) {
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+
+            for (int i = 1; i < row.length; i++) {
+                int substitution = row[i - 1] + (query[i - 1] == character ? 0 : 1);
+                next[i] = Math.min(substitution, Math.min(row[i] + 1, next[i - 1] + 1));
+            }
+
+            return next;
+        }
+
+        private static int min(int[] row) {
+            int min = row[0];
+            for (int value : row) {
+                min = Math.min(min, value);
+            }
+
+            return min;
+        }
+    }
+}
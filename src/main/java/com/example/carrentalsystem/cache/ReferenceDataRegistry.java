@@ -0,0 +1,117 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.*;
+import com.example.carrentalsystem.repositories.FuelTypeRepository;
+import com.example.carrentalsystem.repositories.RentalStatusRepository;
+import com.example.carrentalsystem.repositories.RoleRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Fuel types, rental statuses and roles are seeded once by RepositoryInitializer and never change afterwards,
+// so they are read from the database a single time. load() is called by RepositoryInitializer after seeding.
+@Component
+public class ReferenceDataRegistry {
+    private final FuelTypeRepository fuelTypeRepository;
+    private final RentalStatusRepository rentalStatusRepository;
+    private final RoleRepository roleRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataRegistry(FuelTypeRepository fuelTypeRepository, RentalStatusRepository rentalStatusRepository,
+                                 RoleRepository roleRepository, ObjectMapper objectMapper) {
+        this.fuelTypeRepository = fuelTypeRepository;
+        this.rentalStatusRepository = rentalStatusRepository;
+        this.roleRepository = roleRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public void load() {
+        List<FuelType> fuelTypes = List.copyOf(fuelTypeRepository.findAll());
+        List<RentalStatus> rentalStatuses = List.copyOf(rentalStatusRepository.findAll());
+        List<Role> roles = List.copyOf(roleRepository.findAll());
+
+        snapshot = new Snapshot(
+                fuelTypes,
+                byName(fuelTypes, FuelType::getName, FuelTypeEnum.class),
+                byId(fuelTypes, FuelType::getId),
+                SerializedJson.of(objectMapper, fuelTypes),
+                rentalStatuses,
+                byName(rentalStatuses, RentalStatus::getName, RentalStatusEnum.class),
+                byId(rentalStatuses, RentalStatus::getId),
+                SerializedJson.of(objectMapper, rentalStatuses),
+                byName(roles, Role::getName, RoleEnum.class)
+        );
+    }
+
+    public List<FuelType> getFuelTypes() {
+        return snapshot().fuelTypes;
+    }
+
+    public FuelType getFuelType(FuelTypeEnum name) {
+        return Optional.ofNullable(snapshot().fuelTypesByName.get(name)).orElseThrow(() -> new RuntimeException("Error: Fuel type is not found."));
+    }
+
+    public Optional<FuelType> findFuelType(Long id) {
+        return Optional.ofNullable(snapshot().fuelTypesById.get(id));
+    }
+
+    public SerializedJson getFuelTypesJson() {
+        return snapshot().fuelTypesJson;
+    }
+
+    public List<RentalStatus> getRentalStatuses() {
+        return snapshot().rentalStatuses;
+    }
+
+    public RentalStatus getRentalStatus(RentalStatusEnum name) {
+        return Optional.ofNullable(snapshot().rentalStatusesByName.get(name)).orElseThrow(() -> new RuntimeException("Error: Rental status is not found"));
+    }
+
+    public Optional<RentalStatus> findRentalStatus(Long id) {
+        return Optional.ofNullable(snapshot().rentalStatusesById.get(id));
+    }
+
+    public SerializedJson getRentalStatusesJson() {
+        return snapshot().rentalStatusesJson;
+    }
+
+    public Role getRole(RoleEnum name) {
+        return Optional.ofNullable(snapshot().rolesByName.get(name)).orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if(current == null){
+            throw new IllegalStateException("Error: Reference data is not loaded.");
+        }
+
+        return current;
+    }
+
+    private static <T, E extends Enum<E>> Map<E, T> byName(List<T> values, Function<T, E> name, Class<E> type) {
+        Map<E, T> map = new EnumMap<>(type);
+        values.forEach(value -> map.put(name.apply(value), value));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static <T> Map<Long, T> byId(List<T> values, Function<T, Long> id) {
+        Map<Long, T> map = new HashMap<>();
+        values.forEach(value -> map.put(id.apply(value), value));
+        return Collections.unmodifiableMap(map);
+    }
+
+    private record Snapshot(List<FuelType> fuelTypes,
+                            Map<FuelTypeEnum, FuelType> fuelTypesByName,
+                            Map<Long, FuelType> fuelTypesById,
+                            SerializedJson fuelTypesJson,
+                            List<RentalStatus> rentalStatuses,
+                            Map<RentalStatusEnum, RentalStatus> rentalStatusesByName,
+                            Map<Long, RentalStatus> rentalStatusesById,
+                            SerializedJson rentalStatusesJson,
+                            Map<RoleEnum, Role> rolesByName) {
+    }
+}
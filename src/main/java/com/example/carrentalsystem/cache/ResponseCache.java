@@ -0,0 +1,65 @@
+package com.example.carrentalsystem.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Serialized and gzipped catalog responses, keyed by the request and valid for one catalog revision.
+// Every refresh or reload of the catalog moves the revision, so entries built before it are not used again.
+@Component
+public class ResponseCache {
+    private final CarCatalog catalog;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Catalog revision of the entries in the map, older entries are dropped as soon as a newer one is built
+    private volatile long revision;
+
+    public ResponseCache(CarCatalog catalog, ObjectMapper objectMapper, @Value("${crs.app.catalog.responseCacheSize}") int maxEntries) {
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public SerializedJson get(String key, Supplier<Object> value) {
+        return find(key, () -> Optional.of(value.get())).orElseThrow();
+    }
+
+    // The value is built from the catalog snapshot. The revision is read first, so a cached body is never older than it.
+    // Values that are not found (empty) are not cached.
+    public Optional<SerializedJson> find(String key, Supplier<Optional<?>> value) {
+        long current = catalog.getRevision();
+
+        Entry entry = entries.get(key);
+        if(entry != null && entry.revision == current){
+            return Optional.of(entry.json);
+        }
+
+        Optional<SerializedJson> json = value.get().map(found -> SerializedJson.of(objectMapper, found));
+        json.ifPresent(found -> put(key, new Entry(current, found)));
+        return json;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if(entry.revision < revision){
+            return;
+        }
+
+        // Keys of old revisions are not requested again, a full map only holds keys of rarely repeated requests
+        if(entry.revision > revision || entries.size() >= maxEntries){
+            entries.clear();
+            revision = entry.revision;
+        }
+
+        entries.put(key, entry);
+    }
+
+    private record Entry(long revision, SerializedJson json) {
+    }
+}
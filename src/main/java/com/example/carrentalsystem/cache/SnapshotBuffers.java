@@ -0,0 +1,83 @@
+package com.example.carrentalsystem.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Bulk copies of primitive columns between arrays and a (memory mapped) buffer, used by the catalog snapshot file
+final class SnapshotBuffers {
+    private SnapshotBuffers() {
+    }
+
+    static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+    }
+
+    static long[] getLongs(ByteBuffer buffer, int length) {
+        long[] values = new long[length];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + length * Long.BYTES);
+        return values;
+    }
+
+    static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    static byte[] getBytes(ByteBuffer buffer, int length) {
+        byte[] values = new byte[length];
+        buffer.get(values);
+        return values;
+    }
+
+    static void putBooleans(ByteBuffer buffer, boolean[] values) {
+        for (boolean value : values) {
+            buffer.put(value ? (byte) 1 : (byte) 0);
+        }
+    }
+
+    static boolean[] getBooleans(ByteBuffer buffer, int length) {
+        boolean[] values = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buffer.get() != 0;
+        }
+
+        return values;
+    }
+
+    static int stringsSize(String[] values) {
+        int size = Integer.BYTES;
+        for (String value : values) {
+            size += Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        return size;
+    }
+
+    // Count, then the length and UTF-8 bytes of every string
+    static void putStrings(ByteBuffer buffer, String[] values) {
+        buffer.putInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    static String[] getStrings(ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new String(getBytes(buffer, buffer.getInt()), StandardCharsets.UTF_8);
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.carrentalsystem.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfiguration {
+    // Resizing large photos is CPU and memory heavy, so the pool and its queue are kept small.
+    // Rejected tasks fail with TaskRejectedException, ImageRenditionGenerator submits them again later.
+    @Bean
+    public ThreadPoolTaskExecutor imageRenditionExecutor(@Value("${crs.app.images.renditionThreads}") int threads,
+                                                         @Value("${crs.app.images.renditionQueueCapacity}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-rendition-");
+        return executor;
+    }
+}
@@ -1,14 +0,0 @@
-package com.example.carrentalsystem.config;
-
-import com.fasterxml.jackson.databind.Module;
-import com.fasterxml.jackson.datatype.hibernate5.jakarta.Hibernate5JakartaModule;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-@Configuration
-public class JsonConfiguration {
-    @Bean
-    public Module hibernateModule() {
-        return new Hibernate5JakartaModule();
-    }
-}
@@ -1,15 +1,19 @@
 package com.example.carrentalsystem.config;
 
+import com.example.carrentalsystem.cache.CarAvailabilityIndex;
+import com.example.carrentalsystem.cache.CarCatalog;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.*;
 import com.example.carrentalsystem.repositories.*;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
+import com.example.carrentalsystem.services.CarImageService;
+import com.example.carrentalsystem.storage.CarImageMigration;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 
@@ -19,20 +23,43 @@ public class RepositoryInitializer {
     private final RoleRepository roleRepository;
     private final CarImageRepository carImageRepository;
     private final RentalStatusRepository rentalStatusRepository;
+    private final IdGeneratorRepository idGeneratorRepository;
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final RentalRepository rentalRepository;
+    private final ReservationSlotRepository reservationSlotRepository;
+    private final CarImageService carImageService;
+    private final CarImageMigration carImageMigration;
+    private final CarCatalog catalog;
+    private final ReferenceDataRegistry referenceData;
     private final PasswordEncoder encoder;
 
     public RepositoryInitializer(FuelTypeRepository fuelTypeRepository, RoleRepository roleRepository,
-                                 CarImageRepository carImageRepository, RentalStatusRepository rentalStatusRepository, PasswordEncoder encoder) {
+                                 CarImageRepository carImageRepository, RentalStatusRepository rentalStatusRepository,
+                                 IdGeneratorRepository idGeneratorRepository, CatalogChangeRepository catalogChangeRepository,
+                                 RentalRepository rentalRepository, ReservationSlotRepository reservationSlotRepository,
+                                 CarImageService carImageService, CarImageMigration carImageMigration, CarCatalog catalog,
+                                 ReferenceDataRegistry referenceData, PasswordEncoder encoder) {
         this.fuelTypeRepository = fuelTypeRepository;
         this.roleRepository = roleRepository;
         this.carImageRepository = carImageRepository;
         this.rentalStatusRepository = rentalStatusRepository;
+        this.idGeneratorRepository = idGeneratorRepository;
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.rentalRepository = rentalRepository;
+        this.reservationSlotRepository = reservationSlotRepository;
+        this.carImageService = carImageService;
+        this.carImageMigration = carImageMigration;
+        this.catalog = catalog;
+        this.referenceData = referenceData;
         this.encoder = encoder;
     }
 
     @Bean
     InitializingBean init(UserRepository userRepository) {
         return () -> {
+            idGeneratorRepository.migrate();
+            catalogChangeRepository.migrate();
+
             if(fuelTypeRepository.findAll().isEmpty()){
                 fuelTypeRepository.save(new FuelType(FuelTypeEnum.FUEL_DIESEL));
                 fuelTypeRepository.save(new FuelType(FuelTypeEnum.FUEL_GASOLINE));
@@ -53,12 +80,22 @@ public class RepositoryInitializer {
                 roleRepository.save(new Role(RoleEnum.ROLE_USER));
             }
 
-            if(carImageRepository.findAll().isEmpty()){
-                carImageRepository.save(new CarImage(imageFromURLToByteArray(new URL("https://icon-library.com/images/no-image-icon/no-image-icon-0.jpg"))));
+            referenceData.load();
+
+            reservationSlotRepository.migrate(() -> rentalRepository.findPeriodsByRentalStatusNameIn(CarAvailabilityIndex.BLOCKING_STATUSES));
+
+            if(carImageMigration.migrate()){
+                catalog.load();
+            }
+
+            if(!carImageRepository.existsByDefaultImageTrue()){
+                try (InputStream image = openImageURL(new URL("https://icon-library.com/images/no-image-icon/no-image-icon-0.jpg"))) {
+                    carImageService.storeDefault(image);
+                }
             }
 
             if(userRepository.findAll().isEmpty()){
-                Role adminRole = roleRepository.findByName(RoleEnum.ROLE_ADMIN).orElseThrow(() -> new RuntimeException("Error: Role is not found"));
+                Role adminRole = referenceData.getRole(RoleEnum.ROLE_ADMIN);
                 User user = new User("admin", "admin@admin.pl", encoder.encode("admin"), adminRole);
 
                 userRepository.save(user);
@@ -66,15 +103,12 @@ public class RepositoryInitializer {
         };
     }
 
-    public static byte[] imageFromURLToByteArray(URL url) throws IOException {
+    public static InputStream openImageURL(URL url) throws IOException {
         URLConnection conn = url.openConnection();
         conn.setConnectTimeout(5000);
         conn.setReadTimeout(5000);
         conn.connect();
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        IOUtils.copy(conn.getInputStream(), baos);
-
-        return baos.toByteArray();
+        return conn.getInputStream();
     }
 }
@@ -0,0 +1,10 @@
+package com.example.carrentalsystem.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables @Scheduled methods and the TaskScheduler auto-configured by Spring Boot (spring.task.scheduling.*)
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -0,0 +1,117 @@
+package com.example.carrentalsystem.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// The car catalog follows the changes of every node through the catalog_changes table, but the bookings in
+// CarAvailabilityIndex and ActiveRentalCache only follow the rentals changed on their own node, a second node would
+// answer availability from stale bookings. The application is therefore deployed as a single node: starting fails
+// while another node holds this MySQL named lock.
+// The lock lives as long as the connection holding it. The connection is opened outside the pool and checked
+// periodically, which also keeps MySQL's wait_timeout from closing it. A lost lock is taken again on a new
+// connection, and when another node got it in the meantime this node shuts down.
+@Component("singleNodeLock")
+public class SingleNodeLock implements InitializingBean, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SingleNodeLock.class);
+
+    static final String LOCK_NAME = "crs_single_node";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ConfigurableApplicationContext context;
+    private Connection connection;
+
+    public SingleNodeLock(DataSourceProperties dataSourceProperties, ConfigurableApplicationContext context) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.context = context;
+    }
+
+    @Override
+    public synchronized void afterPropertiesSet() throws SQLException {
+        if(!acquire()){
+            throw new IllegalStateException("Error: Another node of the application is already running on this database.");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${crs.app.singleNodeLock.checkInterval}", initialDelayString = "${crs.app.singleNodeLock.checkInterval}")
+    public synchronized void check() {
+        try {
+            if(execute("select is_used_lock(?) = connection_id()")){
+                return;
+            }
+            logger.error("The single node lock was released while this node is running");
+        } catch (SQLException e) {
+            logger.error("The connection holding the single node lock was lost: {}", e.getMessage());
+        }
+
+        close();
+        try {
+            if(acquire()){
+                logger.warn("The single node lock was taken again");
+                return;
+            }
+            logger.error("Another node of the application took the single node lock, shutting down");
+        } catch (SQLException e) {
+            logger.error("Cannot take the single node lock again, shutting down", e);
+        }
+
+        // Closing the context waits for the scheduler this check runs on, so it is done from a thread of its own
+        new Thread(() -> System.exit(SpringApplication.exit(context, () -> 1)), "single-node-lock-shutdown").start();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if(connection == null){
+            return;
+        }
+
+        try {
+            execute("select release_lock(?)");
+        } catch (SQLException e) {
+            logger.warn("Cannot release the single node lock: {}", e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private boolean acquire() throws SQLException {
+        connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        if(!execute("select get_lock(?, 0)")){
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Cannot close the single node lock connection: {}", e.getMessage());
+        } finally {
+            connection = null;
+        }
+    }
+
+    private boolean execute(String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getInt(1) == 1;
+            }
+        }
+    }
+}
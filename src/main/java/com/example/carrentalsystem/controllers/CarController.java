@@ -1,31 +1,61 @@
 package com.example.carrentalsystem.controllers;
 
+import com.example.carrentalsystem.cache.ImageByteCache;
+import com.example.carrentalsystem.cache.ResponseCache;
 import com.example.carrentalsystem.models.Car;
-import com.example.carrentalsystem.models.RentalStatusEnum;
+import com.example.carrentalsystem.models.CarImage;
 import com.example.carrentalsystem.payload.request.*;
+import com.example.carrentalsystem.services.CarImageServiceImpl;
 import com.example.carrentalsystem.services.CarServiceImpl;
 import com.example.carrentalsystem.services.RentalServiceImpl;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import com.example.carrentalsystem.storage.FileTransfer;
+import com.example.carrentalsystem.storage.ImageSize;
+import com.example.carrentalsystem.storage.ImageTooLargeException;
+import com.example.carrentalsystem.storage.UnsupportedImageTypeException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.*;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
 import java.io.IOException;
-import java.time.LocalDate;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/car")
 public class CarController {
+    private static final ResourceRegionHttpMessageConverter RANGE_CONVERTER = new ResourceRegionHttpMessageConverter();
+
     private final RentalServiceImpl rentalService;
     private final CarServiceImpl carService;
-
-    public CarController(RentalServiceImpl rentalService, CarServiceImpl carService) {
+    private final CarImageServiceImpl carImageService;
+    private final ImageByteCache imageCache;
+    private final ResponseCache responseCache;
+    private final long maxImageSize;
+
+    public CarController(RentalServiceImpl rentalService, CarServiceImpl carService, CarImageServiceImpl carImageService,
+                         ImageByteCache imageCache, ResponseCache responseCache,
+                         @Value("${crs.app.images.maxUploadSize}") DataSize maxImageSize) {
         this.rentalService = rentalService;
         this.carService = carService;
+        this.carImageService = carImageService;
+        this.imageCache = imageCache;
+        this.responseCache = responseCache;
+        this.maxImageSize = maxImageSize.toBytes();
     }
 
     @PostMapping
@@ -35,16 +65,137 @@ public class CarController {
         return ResponseEntity.ok(carService.findAvailableCars());
     }
 
-    @Transactional
-    @PutMapping("{carID}/image")
+    @PutMapping(value = "{carID}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> changeCarImage(@PathVariable("carID") Long carID, @RequestBody MultipartFile file) throws IOException {
-        if(carService.existsById(carID)){
-            carService.changeImage(carID, file);
+        if(file.getSize() > maxImageSize){
+            return new ResponseEntity<>("Car photo is too large", HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        // Multipart uploads are spooled to a temporary file by the servlet container and read back from there
+        try (InputStream content = file.getInputStream()) {
+            return changeImage(carID, content);
+        }
+    }
+
+    // The photo is sent as the raw request body (e.g. Content-Type: image/jpeg) and streamed directly to the storage
+    @PutMapping(value = "{carID}/image", consumes = "image/*")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> uploadCarImage(@PathVariable("carID") Long carID, HttpServletRequest request) throws IOException {
+        if(request.getContentLengthLong() > maxImageSize){
+            return new ResponseEntity<>("Car photo is too large", HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        return changeImage(carID, request.getInputStream());
+    }
+
+    private ResponseEntity<?> changeImage(Long carID, InputStream content) throws IOException {
+        if(!carService.existsById(carID)){
+            return new ResponseEntity<>("Car not found", HttpStatus.NOT_FOUND);
+        }
+
+        try {
+            carService.changeImage(carID, content);
             return new ResponseEntity<>("Car photo changed", HttpStatus.OK);
+        } catch (ImageTooLargeException e) {
+            return new ResponseEntity<>("Car photo is too large", HttpStatus.PAYLOAD_TOO_LARGE);
+        } catch (UnsupportedImageTypeException e) {
+            return new ResponseEntity<>("Unsupported car photo type", HttpStatus.UNSUPPORTED_MEDIA_TYPE);
         }
+    }
 
-        return new ResponseEntity<>("Car not found", HttpStatus.NOT_FOUND);
+    // Writes the response itself, so full responses can be sent without copying the file through the heap
+    @GetMapping("{carID}/image")
+    public void getCarImage(@PathVariable("carID") Long carID, @RequestParam(value = "v", required = false) Long version,
+                            @RequestParam(value = "size", defaultValue = "original") String size,
+                            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageSize imageSize;
+        try {
+            imageSize = ImageSize.fromName(size);
+        } catch (IllegalArgumentException e) {
+            sendMessage(response, HttpStatus.BAD_REQUEST, "Incorrect image size");
+            return;
+        }
+
+        if(!carService.existsById(carID)){
+            sendMessage(response, HttpStatus.NOT_FOUND, "Car not found");
+            return;
+        }
+
+        CarImage carImage = carService.getImage(carID);
+
+        // Until the renditions have been generated the original image is served
+        boolean rendition = carImageService.hasRendition(carImage, imageSize);
+        Resource resource = rendition ? carImageService.loadRendition(carImage, imageSize) : carImageService.load(carImage);
+        String eTag = ImageByteCache.key(carImage.getContentHash(), rendition ? imageSize : ImageSize.ORIGINAL);
+
+        ServletServerHttpResponse output = new ServletServerHttpResponse(response);
+        HttpHeaders headers = output.getHeaders();
+        if(rendition){
+            headers.setContentType(MediaType.IMAGE_JPEG);
+        } else {
+            headers.setContentType(carImage.getContentType() == null ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(carImage.getContentType()));
+        }
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // A versioned URL always points to the same bytes, so it can be cached for a long time
+        headers.setCacheControl(carImage.getImageID().equals(version) && (rendition || imageSize == ImageSize.ORIGINAL)
+                ? CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+                : CacheControl.noCache());
+
+        // Sets the ETag and answers a matching If-None-Match with 304
+        if(new ServletWebRequest(request, response).checkNotModified(eTag)){
+            output.flush();
+            return;
+        }
+
+        if(range != null){
+            sendRanges(range, resource, output);
+        } else if(!resource.isFile()){
+            headers.setContentLength(resource.contentLength());
+            try (InputStream content = resource.getInputStream()) {
+                content.transferTo(output.getBody());
+            }
+        } else {
+            output.flush();
+
+            // Hot images are served from memory, images too large for the cache with sendfile
+            ByteBuffer cached = imageCache.get(eTag, resource);
+            if(cached != null){
+                FileTransfer.send(cached, response);
+            } else {
+                FileTransfer.send(resource.getFile().toPath(), request, response);
+            }
+        }
+    }
+
+    // Same answers as Spring gives for a Resource body: 206 with the requested parts, or 416 for unusable ranges
+    private static void sendRanges(String range, Resource resource, ServletServerHttpResponse output) throws IOException {
+        List<ResourceRegion> regions;
+        try {
+            regions = HttpRange.toResourceRegions(HttpRange.parseRanges(range), resource);
+        } catch (IllegalArgumentException e) {
+            output.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            output.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes */" + resource.contentLength());
+            output.flush();
+            return;
+        }
+
+        output.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        MediaType contentType = output.getHeaders().getContentType();
+        if(regions.size() == 1){
+            RANGE_CONVERTER.write(regions.get(0), contentType, output);
+        } else {
+            RANGE_CONVERTER.write(regions, contentType, output);
+        }
+    }
+
+    private static void sendMessage(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
     }
 
     @PutMapping("{carID}")
@@ -60,8 +211,11 @@ public class CarController {
 
     @GetMapping("{carID}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> getCar(@PathVariable("carID") Long carID){
-        return ResponseEntity.ok(carService.getCarById(carID));
+    public ResponseEntity<?> getCar(@PathVariable("carID") Long carID,
+                                    @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        return responseCache.find("car:" + carID, () -> carService.findSummaryById(carID))
+                .<ResponseEntity<?>>map(json -> JsonResponses.of(json, acceptEncoding))
+                .orElseGet(() -> new ResponseEntity<>("Car not found", HttpStatus.NOT_FOUND));
     }
 
     @PutMapping("{carID}/status")
@@ -70,7 +224,7 @@ public class CarController {
         if(carService.existsById(carID)){
             Car car = carService.getCarById(carID);
 
-            if(!rentalService.existsDateAndStatus(LocalDate.now(), RentalStatusEnum.STATUS_ACCEPTED)){
+            if(!rentalService.isCarRented(carID)){
                 carService.changeStatus(car);
                 return new ResponseEntity<>("The availability of the car has been changed", HttpStatus.OK);
             }
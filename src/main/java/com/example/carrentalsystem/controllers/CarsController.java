@@ -1,31 +1,202 @@
 package com.example.carrentalsystem.controllers;
 
+import com.example.carrentalsystem.payload.request.CarCursor;
+import com.example.carrentalsystem.cache.ImageByteCache;
+import com.example.carrentalsystem.cache.NameSuggestIndex;
+import com.example.carrentalsystem.cache.ResponseCache;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
+import com.example.carrentalsystem.payload.response.CarBulkUpdateResponse;
+import com.example.carrentalsystem.payload.response.CarPageResponse;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.CatalogChangesResponse;
+import com.example.carrentalsystem.services.CarImportFormat;
+import com.example.carrentalsystem.services.CarImportServiceImpl;
 import com.example.carrentalsystem.services.CarServiceImpl;
+import com.example.carrentalsystem.services.CarsRentedException;
+import com.example.carrentalsystem.services.FuelService;
+import com.example.carrentalsystem.storage.ImageSize;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/cars")
 public class CarsController {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final CarServiceImpl carService;
+    private final ImageByteCache imageCache;
+    private final CarImportServiceImpl carImportService;
+    private final NameSuggestIndex suggestIndex;
+    private final ResponseCache responseCache;
+    private final FuelService fuelService;
 
-    public CarsController(CarServiceImpl carService) {
+    public CarsController(CarServiceImpl carService, ImageByteCache imageCache, CarImportServiceImpl carImportService,
+                          NameSuggestIndex suggestIndex, ResponseCache responseCache, FuelService fuelService) {
         this.carService = carService;
+        this.imageCache = imageCache;
+        this.carImportService = carImportService;
+        this.suggestIndex = suggestIndex;
+        this.responseCache = responseCache;
+        this.fuelService = fuelService;
     }
 
     @GetMapping("available")
-    public ResponseEntity<?> getAvailableCars(){
-        return ResponseEntity.ok(carService.findAvailableCars());
+    public ResponseEntity<?> getAvailableCars(@RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "size", defaultValue = "20") int size,
+                                              @RequestParam(value = "sort", defaultValue = CarCursor.SORT_ID) String sort,
+                                              @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                              @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                              @RequestParam(value = "imageSize", defaultValue = "thumbnail") String imageSize,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        if(size < 1 || size > MAX_PAGE_SIZE){
+            return new ResponseEntity<>("Incorrect page size", HttpStatus.BAD_REQUEST);
+        }
+
+        if((from == null) != (to == null) || (from != null && to.isBefore(from))){
+            return new ResponseEntity<>("Incorrect date range", HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            ImageSize rendition = ImageSize.fromName(imageSize);
+
+            if(from != null){
+                return ResponseEntity.ok(summaries(carService.findAvailableCars(toCursor(cursor, sort), size, from, to), rendition));
+            }
+
+            // Without a date range a page only depends on the catalog, so it is built once per catalog version. The key is
+            // built from the decoded cursor, tokens that decode to the same position share one entry.
+            CarCursor carCursor = toCursor(cursor, sort);
+            String key = "available:" + carCursor.encode() + ":" + size + ":" + rendition.getName();
+            return JsonResponses.of(responseCache.get(key, () -> summaries(carService.findAvailableCars(carCursor, size), rendition)),
+                    acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Incorrect cursor, sort key or image size", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("search")
+    public ResponseEntity<?> searchCars(@Valid CarSearchRequest request,
+                                        @RequestParam(value = "imageSize", defaultValue = "thumbnail") String imageSize){
+        ImageSize rendition;
+
+        try {
+            rendition = ImageSize.fromName(imageSize);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Incorrect image size", HttpStatus.BAD_REQUEST);
+        }
+
+        List<CarSummaryResponse> cars = carService.search(request);
+        cars.forEach(car -> car.withImageSize(rendition));
+        return ResponseEntity.ok(cars);
+    }
+
+    // Clients keep a local copy of the catalog up to date with the cars changed since the version they hold
+    @GetMapping("changes")
+    public ResponseEntity<?> getChanges(@RequestParam("since") long since,
+                                        @RequestParam(value = "imageSize", defaultValue = "thumbnail") String imageSize){
+        ImageSize rendition;
+
+        try {
+            rendition = ImageSize.fromName(imageSize);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Incorrect image size", HttpStatus.BAD_REQUEST);
+        }
+
+        CatalogChangesResponse changes = carService.findChanges(since);
+        changes.getCars().forEach(car -> car.withImageSize(rendition));
+        return ResponseEntity.ok(changes);
+    }
+
+    // Type-ahead for the brand and model pickers, answered from memory
+    @GetMapping("suggest")
+    public ResponseEntity<?> suggestNames(@RequestParam("q") String query,
+                                          @RequestParam(value = "limit", defaultValue = "10") int limit){
+        if(limit < 1 || limit > MAX_SUGGESTIONS){
+            return new ResponseEntity<>("Incorrect suggestion limit", HttpStatus.BAD_REQUEST);
+        }
+
+        return ResponseEntity.ok(suggestIndex.suggest(query, limit));
     }
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<?> getAllCars(){
-        return ResponseEntity.ok(carService.findAll());
+    public ResponseEntity<?> getAllCars(@RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "size", defaultValue = "20") int size,
+                                        @RequestParam(value = "sort", defaultValue = CarCursor.SORT_ID) String sort,
+                                        @RequestParam(value = "imageSize", defaultValue = "thumbnail") String imageSize){
+        if(size < 1 || size > MAX_PAGE_SIZE){
+            return new ResponseEntity<>("Incorrect page size", HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            return ResponseEntity.ok(summaries(carService.findAll(toCursor(cursor, sort), size), ImageSize.fromName(imageSize)));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Incorrect cursor, sort key or image size", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Seasonal price changes and withdrawals for many cars at once, run as one UPDATE statement
+    @PatchMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> updateCars(@RequestBody @Valid CarBulkUpdateRequest request){
+        if(request.getPrice() != null && request.getPriceChangePercent() != null){
+            return new ResponseEntity<>("Price and price change cannot be combined", HttpStatus.BAD_REQUEST);
+        }
+
+        if(request.getPrice() == null && request.getPriceChangePercent() == null && request.getAvailable() == null && request.getFuelType() == null){
+            return new ResponseEntity<>("No changes given", HttpStatus.BAD_REQUEST);
+        }
+
+        if(request.getFuelType() != null && fuelService.findById(request.getFuelType()).isEmpty()){
+            return new ResponseEntity<>("Fuel type not found", HttpStatus.NOT_FOUND);
+        }
+
+        try {
+            return ResponseEntity.ok(new CarBulkUpdateResponse(carService.update(request)));
+        } catch (CarsRentedException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        }
+    }
+
+    @GetMapping("image-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getImageCacheStatistics(){
+        return ResponseEntity.ok(imageCache.getStatistics());
+    }
+
+    // Rows are read straight from the request body, the response lists the rows that were rejected
+    @PostMapping(value = "import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importCars(HttpServletRequest request) throws IOException {
+        Optional<CarImportFormat> format = CarImportFormat.fromContentType(request.getContentType());
+        if(format.isEmpty()){
+            return new ResponseEntity<>("Unsupported import format", HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        }
+
+        return ResponseEntity.ok(carImportService.importCars(request.getInputStream(), format.get()));
+    }
+
+    // The sort key is carried inside the cursor, so it is only read from the request for the first page
+    private CarCursor toCursor(String cursor, String sort){
+        return cursor == null ? CarCursor.first(sort) : CarCursor.decode(cursor);
+    }
+
+    // Catalog listings link to a rendition instead of the uploaded original
+    private CarPageResponse<CarSummaryResponse> summaries(CarPageResponse<CarSummaryResponse> page, ImageSize size){
+        page.getCars().forEach(car -> car.withImageSize(size));
+        return page;
     }
 }
@@ -1,24 +1,23 @@
 package com.example.carrentalsystem.controllers;
 
-import com.example.carrentalsystem.services.FuelServiceImpl;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/fuels")
 public class FuelController {
-    private final FuelServiceImpl fuelService;
+    private final ReferenceDataRegistry referenceData;
 
-    public FuelController(FuelServiceImpl fuelService) {
-        this.fuelService = fuelService;
+    public FuelController(ReferenceDataRegistry referenceData) {
+        this.referenceData = referenceData;
     }
 
     @GetMapping
-    public ResponseEntity<?> getFuelList(){
-        return ResponseEntity.ok(fuelService.findAll());
+    public ResponseEntity<?> getFuelList(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        // Serialized and compressed once at startup, an unchanged list is answered with 304 Not Modified
+        return JsonResponses.of(referenceData.getFuelTypesJson(), acceptEncoding);
     }
 }
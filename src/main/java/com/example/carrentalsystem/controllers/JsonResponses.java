@@ -0,0 +1,71 @@
+package com.example.carrentalsystem.controllers;
+
+import com.example.carrentalsystem.cache.SerializedJson;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Locale;
+
+// Sends a body serialized in advance. A matching If-None-Match is answered with 304 Not Modified by Spring MVC,
+// clients accepting gzip get the compressed bytes.
+final class JsonResponses {
+    private JsonResponses() {
+    }
+
+    static ResponseEntity<byte[]> of(SerializedJson json, String acceptEncoding) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        // Each encoding is a different representation, so it gets its own ETag
+        if(acceptsGzip(acceptEncoding)){
+            return response.eTag(json.getETag() + "-gzip")
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(json.getGzipBody());
+        }
+
+        return response.eTag(json.getETag()).body(json.getBody());
+    }
+
+    // Codings are listed with optional weights (e.g. "gzip;q=0.8, br"), a weight of 0 refuses the coding and "*" stands
+    // for every coding that is not listed
+    static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null){
+            return false;
+        }
+
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+
+            if(name.equals("gzip") || name.equals("x-gzip")){
+                gzip = Math.max(gzip, quality(parts));
+            } else if(name.equals("*")){
+                any = Math.max(any, quality(parts));
+            }
+        }
+
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
+
+    // A weight that cannot be read refuses the coding
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if(parameter.regionMatches(true, 0, "q=", 0, 2)){
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
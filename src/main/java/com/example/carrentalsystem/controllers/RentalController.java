@@ -4,6 +4,8 @@ import com.example.carrentalsystem.payload.request.*;
 import com.example.carrentalsystem.services.CarServiceImpl;
 import com.example.carrentalsystem.services.RentalServiceImpl;
 import com.example.carrentalsystem.services.RentalStatusService;
+import com.example.carrentalsystem.services.RentalStatusTransitionException;
+import com.example.carrentalsystem.services.ReservationConflictException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -29,7 +31,12 @@ public class RentalController {
     public ResponseEntity<?> addRental(@RequestBody @Valid AddCarRentalRequest request){
         if(carService.existsById(request.getCarID())){
             if((request.getEndDate().isAfter(request.getStartDate())) || (request.getEndDate().isEqual(request.getStartDate()))) {
-                rentalService.add(request);
+                try {
+                    rentalService.add(request);
+                } catch (ReservationConflictException e) {
+                    return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+                }
+
                 return new ResponseEntity<>("Rental added", HttpStatus.OK);
             }
 
@@ -42,7 +49,19 @@ public class RentalController {
     @GetMapping("{rentalID}")
     @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
     public ResponseEntity<?> getRentalInfo(@PathVariable("rentalID") Long rentalID){
-        return ResponseEntity.ok(rentalService.findById(rentalID));
+        return rentalService.findById(rentalID)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> new ResponseEntity<>("No rental found", HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("{rentalID}/history")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public ResponseEntity<?> getRentalHistory(@PathVariable("rentalID") Long rentalID){
+        if(rentalService.existsById(rentalID)){
+            return ResponseEntity.ok(rentalService.findHistory(rentalID));
+        }
+
+        return new ResponseEntity<>("No rental found", HttpStatus.NOT_FOUND);
     }
 
     @PutMapping("{rentalID}/status/{statusID}")
@@ -50,7 +69,12 @@ public class RentalController {
     public ResponseEntity<?> changeStatus(@PathVariable("rentalID") Long rentalID, @PathVariable("statusID") Long statusID){
         if(rentalService.existsById(rentalID)){
             if(rentalStatusService.existsById(statusID)){
-                rentalService.changeStatus(statusID, rentalID);
+                try {
+                    rentalService.changeStatus(statusID, rentalID);
+                } catch (ReservationConflictException | RentalStatusTransitionException e) {
+                    return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+                }
+
                 return new ResponseEntity<>("Rental status changed", HttpStatus.OK);
             }
 
@@ -65,7 +89,12 @@ public class RentalController {
     public ResponseEntity<?> changeRentalInformation(@PathVariable("rentalID") Long rentalID, @RequestBody @Valid EditCarRentalRequest request){
         if(rentalService.existsById(rentalID)){
             if((request.getEndDate().isAfter(request.getStartDate())) || (request.getEndDate().isEqual(request.getStartDate()))) {
-                rentalService.update(rentalID, request);
+                try {
+                    rentalService.update(rentalID, request);
+                } catch (ReservationConflictException e) {
+                    return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+                }
+
                 return new ResponseEntity<>("Rent details changed", HttpStatus.OK);
             }
 
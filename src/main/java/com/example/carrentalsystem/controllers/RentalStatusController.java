@@ -1,24 +1,23 @@
 package com.example.carrentalsystem.controllers;
 
-import com.example.carrentalsystem.services.RentalStatusServiceImpl;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/rental-statuses")
 public class RentalStatusController {
-    private final RentalStatusServiceImpl rentalStatusService;
+    private final ReferenceDataRegistry referenceData;
 
-    public RentalStatusController(RentalStatusServiceImpl rentalStatusService) {
-        this.rentalStatusService = rentalStatusService;
+    public RentalStatusController(ReferenceDataRegistry referenceData) {
+        this.referenceData = referenceData;
     }
 
     @GetMapping
-    public ResponseEntity<?> getRentalStatusList(){
-        return ResponseEntity.ok(rentalStatusService.findAll());
+    public ResponseEntity<?> getRentalStatusList(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        // Serialized and compressed once at startup, an unchanged list is answered with 304 Not Modified
+        return JsonResponses.of(referenceData.getRentalStatusesJson(), acceptEncoding);
     }
 }
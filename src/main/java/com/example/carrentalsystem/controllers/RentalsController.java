@@ -1,6 +1,10 @@
 package com.example.carrentalsystem.controllers;
 
+import com.example.carrentalsystem.payload.request.RentalStatusChangeRequest;
 import com.example.carrentalsystem.services.RentalServiceImpl;
+import com.example.carrentalsystem.services.RentalStatusService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -10,9 +14,11 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/rentals")
 public class RentalsController {
     private final RentalServiceImpl rentalService;
+    private final RentalStatusService rentalStatusService;
 
-    public RentalsController(RentalServiceImpl rentalService) {
+    public RentalsController(RentalServiceImpl rentalService, RentalStatusService rentalStatusService) {
         this.rentalService = rentalService;
+        this.rentalStatusService = rentalStatusService;
     }
 
     @GetMapping
@@ -26,4 +32,15 @@ public class RentalsController {
     public ResponseEntity<?> getUserRentals(@PathVariable("userID") Long userID){
         return ResponseEntity.ok(rentalService.findByUserId(userID));
     }
+
+    // Clears the approval queue in one call, the result of every rental is returned in the order of the request
+    @PutMapping("status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> changeStatuses(@RequestBody @Valid RentalStatusChangeRequest request){
+        if(rentalStatusService.existsById(request.getStatusID())){
+            return ResponseEntity.ok(rentalService.changeStatuses(request.getRentalIDs(), request.getStatusID()));
+        }
+
+        return new ResponseEntity<>("No rental status found", HttpStatus.NOT_FOUND);
+    }
 }
@@ -2,24 +2,36 @@ package com.example.carrentalsystem.models;
 
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "brands")
+@Table(name = "brands", indexes = @Index(name = "idx_brands_name", columnList = "name"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
-public class Brand {
+public class Brand implements DictionaryEntry {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "brands")
+    @TableGenerator(name = "brands", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "brands", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @NotEmpty
     @Size(min = 3, max = 30)
     private String name;
 
+    // Number of cars referencing this brand, maintained by CarDictionary
+    @JsonIgnore
+    private int carCount;
+
+    public Brand(Long id, String name){
+        this.id = id;
+        this.name = name;
+    }
+
     public Brand(String name){
         this.name = name;
     }
@@ -1,18 +1,30 @@
 package com.example.carrentalsystem.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
 @Entity
-@Table(name = "cars")
+@Table(name = "cars", indexes = {
+        @Index(name = "idx_cars_available_id", columnList = "available, id"),
+        @Index(name = "idx_cars_available_price_id", columnList = "available, price, id"),
+        @Index(name = "idx_cars_price_id", columnList = "price, id"),
+        @Index(name = "idx_cars_brand_model_price", columnList = "brand_id, model_id, price"),
+        @Index(name = "idx_cars_fuel_type_price", columnList = "fuel_type_id, price"),
+        @Index(name = "idx_cars_year_price", columnList = "year, price"),
+        @Index(name = "idx_cars_horse_power_price", columnList = "horse_power, price")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
 public class Car {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "cars")
+    @TableGenerator(name = "cars", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "cars", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne
@@ -48,8 +60,10 @@ public class Car {
 
     private boolean available;
 
-    @ManyToOne
+    // Image bytes are served by GET /api/car/{id}/image, car payloads only carry the image ID and URL
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "car_image_image_id")
+    @JsonIgnore
     private CarImage carImage;
 
     public Car(Brand brand, CarModel model, Integer year, Integer mileage, FuelType fuelType, Integer horsePower, String capacity, Integer price, boolean available, CarImage carImage) {
@@ -64,4 +78,15 @@ public class Car {
         this.available = available;
         this.carImage = carImage;
     }
+
+    @JsonProperty("imageID")
+    public Long getImageID() {
+        return carImage == null ? null : carImage.getImageID();
+    }
+
+    // The image ID is part of the URL, so clients can cache the image for as long as it is not changed
+    @JsonProperty("imageUrl")
+    public String getImageUrl() {
+        return id == null || carImage == null ? null : "/api/car/" + id + "/image?v=" + carImage.getImageID();
+    }
 }
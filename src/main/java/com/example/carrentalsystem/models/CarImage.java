@@ -11,15 +11,48 @@ import lombok.*;
 @Setter
 public class CarImage {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "car_images")
+    @TableGenerator(name = "car_images", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "car_images", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long imageID;
 
+    // Only set for images stored before the file storage was introduced, see CarImageMigration.
+    // Lazy with bytecode enhancement, loading a car image row never reads the BLOB.
     @Lob
-    @Column(columnDefinition="BLOB", nullable = false)
+    @Basic(fetch = FetchType.LAZY)
+    @Column(columnDefinition="BLOB")
     private byte[] fileContent;
 
+    @Column(length = 100)
+    private String contentType;
+
+    // Hex encoded SHA-256 of the content, used as the storage key and as the strong ETag of the image
+    @Column(length = 64, unique = true)
+    private String contentHash;
+
+    private long contentLength;
+
+    // Number of cars using the image, the image is removed when it drops to zero
+    private int referenceCount;
+
+    // The image assigned to new cars, kept even when no car uses it
+    private boolean defaultImage;
+
     public CarImage(byte[] fileContent) {
         this.fileContent = fileContent;
     }
 
+    public CarImage(Long imageID, byte[] fileContent) {
+        this.imageID = imageID;
+        this.fileContent = fileContent;
+    }
+
+    public CarImage(String contentType, String contentHash, long contentLength, int referenceCount, boolean defaultImage) {
+        this.contentType = contentType;
+        this.contentHash = contentHash;
+        this.contentLength = contentLength;
+        this.referenceCount = referenceCount;
+        this.defaultImage = defaultImage;
+    }
+
 }
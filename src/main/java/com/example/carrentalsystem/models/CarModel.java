@@ -1,25 +1,37 @@
 package com.example.carrentalsystem.models;
 
 import jakarta.validation.constraints.Size;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotEmpty;
 
 @Entity
-@Table(name = "car_models")
+@Table(name = "car_models", indexes = @Index(name = "idx_car_models_name", columnList = "name"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
-public class CarModel {
+public class CarModel implements DictionaryEntry {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "car_models")
+    @TableGenerator(name = "car_models", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "car_models", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @NotEmpty
     @Size(min = 3, max = 30)
     private String name;
 
+    // Number of cars referencing this model, maintained by CarDictionary
+    @JsonIgnore
+    private int carCount;
+
+    public CarModel(Long id, String name){
+        this.id = id;
+        this.name = name;
+    }
+
     public CarModel(String name){
         this.name = name;
     }
@@ -0,0 +1,41 @@
+package com.example.carrentalsystem.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// One row for every car changed by a catalog version. Written in the transaction that changed the cars and read by
+// every node to bring its car catalog up to date, rows are written and read by CatalogChangeRepository.
+@Entity
+@Table(name = CatalogChange.TABLE, indexes = @Index(name = "idx_catalog_changes_changed_at", columnList = "changed_at"))
+@IdClass(CatalogChange.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CatalogChange {
+    public static final String TABLE = "catalog_changes";
+
+    @Id
+    @Column(name = "version")
+    private Long version;
+
+    @Id
+    @Column(name = "car_id")
+    private Long carId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    @Setter
+    public static class Key implements Serializable {
+        private Long version;
+        private Long carId;
+    }
+}
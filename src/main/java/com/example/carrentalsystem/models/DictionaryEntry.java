@@ -0,0 +1,12 @@
+package com.example.carrentalsystem.models;
+
+// Names shared by many cars (brands, car models), counted so unused names can be removed without COUNT queries
+public interface DictionaryEntry {
+    Long getId();
+
+    String getName();
+
+    int getCarCount();
+
+    void setCarCount(int carCount);
+}
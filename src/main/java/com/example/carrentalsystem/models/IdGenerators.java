@@ -0,0 +1,15 @@
+package com.example.carrentalsystem.models;
+
+// Shared settings of the table based ID generators. Each entity table has its own row in id_generators holding
+// the next free ID, and IDs are handed out in blocks so Hibernate can batch inserts (IDENTITY needs a round trip per row).
+public final class IdGenerators {
+    public static final String TABLE = "id_generators";
+    public static final String SEGMENT_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+
+    // Matches hibernate.jdbc.batch_size
+    public static final int ALLOCATION_SIZE = 50;
+
+    private IdGenerators() {
+    }
+}
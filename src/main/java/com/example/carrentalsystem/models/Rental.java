@@ -5,23 +5,28 @@ import lombok.*;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
 
 @Entity
-@Table(name = "rentals")
+@Table(name = "rentals", indexes = @Index(name = "idx_rentals_car_status_dates", columnList = "car_id, rental_status_id, start_date, end_date"))
 @NoArgsConstructor
 @Getter
 @Setter
 public class Rental {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "rentals")
+    @TableGenerator(name = "rentals", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "rentals", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne
     @JoinColumn(name = "car_id")
     private Car car;
 
+    // Owning side of User.rentals, a rental is inserted with its user_id without loading the user's other rentals
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
     private LocalDate startDate;
 
     private LocalDate endDate;
@@ -36,10 +41,6 @@ public class Rental {
     @JoinColumn(name = "rental_status_id")
     private RentalStatus rentalStatus;
 
-    @OneToMany(orphanRemoval = true, cascade = CascadeType.REMOVE)
-    @JoinColumn(name = "rental_id")
-    private List<StatusHistory> statusHistory = new ArrayList<>();
-
     public Rental(Car car, LocalDate startDate, LocalDate endDate, LocalDate addDate, Long price, RentalStatus rentalStatus) {
         this.car = car;
         this.startDate = startDate;
@@ -49,13 +50,13 @@ public class Rental {
         this.rentalStatus = rentalStatus;
     }
 
-    public Rental(Car car, LocalDate startDate, LocalDate endDate, LocalDate addDate, Long price, RentalStatus rentalStatus, List<StatusHistory> statusHistory) {
+    public Rental(Car car, User user, LocalDate startDate, LocalDate endDate, LocalDate addDate, Long price, RentalStatus rentalStatus) {
         this.car = car;
+        this.user = user;
         this.startDate = startDate;
         this.endDate = endDate;
         this.addDate = addDate;
         this.price = price;
         this.rentalStatus = rentalStatus;
-        this.statusHistory = statusHistory;
     }
 }
@@ -1,8 +1,27 @@
 package com.example.carrentalsystem.models;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum RentalStatusEnum {
     STATUS_PENDING,
     STATUS_ACCEPTED,
     STATUS_REJECTED,
-    STATUS_CANCELLED
+    STATUS_CANCELLED;
+
+    // Statuses each status may be changed to. A rejected booking can still be accepted, a cancelled one is final.
+    private static final Map<RentalStatusEnum, Set<RentalStatusEnum>> TRANSITIONS = new EnumMap<>(RentalStatusEnum.class);
+
+    static {
+        TRANSITIONS.put(STATUS_PENDING, EnumSet.of(STATUS_ACCEPTED, STATUS_REJECTED, STATUS_CANCELLED));
+        TRANSITIONS.put(STATUS_ACCEPTED, EnumSet.of(STATUS_CANCELLED));
+        TRANSITIONS.put(STATUS_REJECTED, EnumSet.of(STATUS_ACCEPTED));
+        TRANSITIONS.put(STATUS_CANCELLED, EnumSet.noneOf(RentalStatusEnum.class));
+    }
+
+    public boolean canChangeTo(RentalStatusEnum status) {
+        return TRANSITIONS.get(this).contains(status);
+    }
 }
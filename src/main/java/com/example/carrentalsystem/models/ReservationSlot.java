@@ -0,0 +1,43 @@
+package com.example.carrentalsystem.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// One row for every day a car is booked. The primary key (car_id, rental_day) is the unique constraint that makes the
+// database reject a second booking of a car for a day, rows are written and removed by ReservationSlotRepository.
+@Entity
+@Table(name = ReservationSlot.TABLE, indexes = {
+        @Index(name = "idx_reservation_slots_rental", columnList = "rental_id"),
+        @Index(name = "idx_reservation_slots_day", columnList = "rental_day")})
+@IdClass(ReservationSlot.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ReservationSlot {
+    public static final String TABLE = "reservation_slots";
+
+    @Id
+    @Column(name = "car_id")
+    private Long carId;
+
+    @Id
+    @Column(name = "rental_day")
+    private LocalDate rentalDay;
+
+    @Column(name = "rental_id", nullable = false)
+    private Long rentalId;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    @Setter
+    public static class Key implements Serializable {
+        private Long carId;
+        private LocalDate rentalDay;
+    }
+}
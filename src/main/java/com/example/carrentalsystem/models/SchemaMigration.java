@@ -0,0 +1,25 @@
+package com.example.carrentalsystem.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// One row for every one-time data migration that has completed, so it is skipped on later startups.
+// Rows are written and read by the repository running the migration.
+@Entity
+@Table(name = SchemaMigration.TABLE)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class SchemaMigration {
+    public static final String TABLE = "schema_migrations";
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "applied_at", nullable = false)
+    private LocalDateTime appliedAt;
+}
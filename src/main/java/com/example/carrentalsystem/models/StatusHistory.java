@@ -4,28 +4,37 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
+import org.hibernate.annotations.Immutable;
 
 import java.time.LocalDate;
 
+// Append-only log of the status changes of a rental. Rows are never updated, they are inserted with their rental_id
+// and read or deleted by it through the (rental_id, id) index.
 @Entity
-@Table(name = "status_history")
+@Immutable
+@Table(name = "status_history", indexes = @Index(name = "idx_status_history_rental", columnList = "rental_id, id"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
-@Setter
 public class StatusHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "status_history")
+    @TableGenerator(name = "status_history", table = IdGenerators.TABLE, pkColumnName = IdGenerators.SEGMENT_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "status_history", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "rental_id", nullable = false, updatable = false)
+    private Rental rental;
+
     @ManyToOne
     @JoinColumn(name = "status_after_change")
     private RentalStatus statusAfterChange;
 
     private LocalDate changeDate;
 
-    public StatusHistory(RentalStatus statusAfterChange, LocalDate changeDate) {
+    public StatusHistory(Rental rental, RentalStatus statusAfterChange, LocalDate changeDate) {
+        this.rental = rental;
         this.statusAfterChange = statusAfterChange;
         this.changeDate = changeDate;
     }
@@ -0,0 +1,27 @@
+package com.example.carrentalsystem.payload.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+// Only the given changes are applied. Price and price change percent cannot be combined.
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarBulkUpdateRequest {
+    @Valid
+    @NotNull
+    private CarFilter filter;
+
+    @Min(50)
+    private Integer price;
+
+    @Min(-90)
+    @Max(1000)
+    private Integer priceChangePercent;
+
+    private Boolean available;
+
+    private Long fuelType;
+}
@@ -0,0 +1,58 @@
+package com.example.carrentalsystem.payload.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Getter
+@AllArgsConstructor
+public class CarCursor {
+    public static final String SORT_ID = "id";
+    public static final String SORT_PRICE = "price";
+
+    private String sort;
+
+    private Long lastId;
+
+    private Integer lastPrice;
+
+    public static CarCursor first(String sort) {
+        if(SORT_PRICE.equals(sort)) {
+            return new CarCursor(SORT_PRICE, 0L, Integer.MIN_VALUE);
+        }
+
+        if(SORT_ID.equals(sort)) {
+            return new CarCursor(SORT_ID, 0L, null);
+        }
+
+        throw new IllegalArgumentException("Error: Unknown sort key.");
+    }
+
+    // Token format (before Base64 encoding): "id:<lastId>" or "price:<lastPrice>:<lastId>"
+    public static CarCursor decode(String token) {
+        String[] parts;
+
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+
+            if(parts.length == 2 && SORT_ID.equals(parts[0])) {
+                return new CarCursor(SORT_ID, Long.parseLong(parts[1]), null);
+            }
+
+            if(parts.length == 3 && SORT_PRICE.equals(parts[0])) {
+                return new CarCursor(SORT_PRICE, Long.parseLong(parts[2]), Integer.parseInt(parts[1]));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Error: Invalid cursor.", e);
+        }
+
+        throw new IllegalArgumentException("Error: Invalid cursor.");
+    }
+
+    public String encode() {
+        String value = SORT_PRICE.equals(sort) ? sort + ":" + lastPrice + ":" + lastId : sort + ":" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.carrentalsystem.payload.request;
+
+import jakarta.validation.constraints.Min;
+import lombok.*;
+
+import java.util.List;
+
+// Selects the cars changed by a bulk update. All given criteria have to match, without any criteria every car matches.
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarFilter {
+    private String brand;
+
+    private String model;
+
+    @Min(0)
+    private Integer minYear;
+
+    @Min(0)
+    private Integer maxYear;
+
+    private List<Long> ids;
+}
@@ -0,0 +1,54 @@
+package com.example.carrentalsystem.payload.request;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarSearchRequest {
+    public static final int MAX_SIZE = 100;
+    // The offset of the last page (page * size) still fits in an int
+    public static final int MAX_PAGE = Integer.MAX_VALUE / MAX_SIZE;
+
+    private String brand;
+
+    private String model;
+
+    private Long fuelType;
+
+    @Min(0)
+    private Integer minPrice;
+
+    @Min(0)
+    private Integer maxPrice;
+
+    @Min(0)
+    private Integer minHorsePower;
+
+    @Min(0)
+    private Integer maxHorsePower;
+
+    @Min(0)
+    private Integer minYear;
+
+    @Min(0)
+    private Integer maxYear;
+
+    private String capacity;
+
+    @Pattern(regexp = "id|price|year|horsePower|mileage")
+    private String sort = "id";
+
+    @Pattern(regexp = "asc|desc")
+    private String direction = "asc";
+
+    @Min(0)
+    @Max(MAX_PAGE)
+    private int page = 0;
+
+    @Min(1)
+    @Max(MAX_SIZE)
+    private int size = 20;
+}
@@ -0,0 +1,22 @@
+package com.example.carrentalsystem.payload.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+// Moves every given rental to the same status in one transaction
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalStatusChangeRequest {
+    @NotEmpty
+    @Size(max = 10000)
+    private List<@NotNull Long> rentalIDs;
+
+    @NotNull
+    private Long statusID;
+}
@@ -0,0 +1,10 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CarBulkUpdateResponse {
+    private int updated;
+}
@@ -0,0 +1,13 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class CarImportError {
+    // Line number in the uploaded file, counting from 1
+    private long line;
+
+    private String message;
+}
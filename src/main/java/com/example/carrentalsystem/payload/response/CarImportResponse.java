@@ -0,0 +1,17 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CarImportResponse {
+    private long imported;
+
+    private long rejected;
+
+    // Limited to the first errors, rejected holds the total
+    private List<CarImportError> errors;
+}
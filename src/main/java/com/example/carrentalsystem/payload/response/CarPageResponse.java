@@ -0,0 +1,17 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class CarPageResponse<T> {
+    private List<T> cars;
+
+    // Null when the last page has been reached
+    private String nextCursor;
+}
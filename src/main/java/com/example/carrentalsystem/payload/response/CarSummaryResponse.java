@@ -0,0 +1,64 @@
+package com.example.carrentalsystem.payload.response;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.storage.ImageSize;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CarSummaryResponse {
+    private Long id;
+
+    private String brand;
+
+    private String model;
+
+    private Integer year;
+
+    private Integer mileage;
+
+    private FuelTypeEnum fuelType;
+
+    private Integer horsePower;
+
+    private String capacity;
+
+    private Integer price;
+
+    private boolean available;
+
+    private Long imageID;
+
+    private String imageUrl;
+
+    public CarSummaryResponse(Long id, String brand, String model, Integer year, Integer mileage, FuelTypeEnum fuelType,
+                              Integer horsePower, String capacity, Integer price, boolean available, Long imageID) {
+        this.id = id;
+        this.brand = brand;
+        this.model = model;
+        this.year = year;
+        this.mileage = mileage;
+        this.fuelType = fuelType;
+        this.horsePower = horsePower;
+        this.capacity = capacity;
+        this.price = price;
+        this.available = available;
+        this.imageID = imageID;
+        this.imageUrl = imageUrl(ImageSize.ORIGINAL);
+    }
+
+    public CarSummaryResponse withImageSize(ImageSize size) {
+        this.imageUrl = imageUrl(size);
+        return this;
+    }
+
+    private String imageUrl(ImageSize size) {
+        if(imageID == null){
+            return null;
+        }
+
+        String url = "/api/car/" + id + "/image?v=" + imageID;
+        return size == ImageSize.ORIGINAL ? url : url + "&size=" + size.getName();
+    }
+}
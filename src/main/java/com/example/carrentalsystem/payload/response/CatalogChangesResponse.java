@@ -0,0 +1,21 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CatalogChangesResponse {
+    // Passed as "since" on the next request. Changes made while the response was built may be sent twice.
+    private long version;
+
+    // The changes are no longer known: the client has to download the whole list again, then continue from version
+    private boolean resyncRequired;
+
+    // Current state of every car added or changed since the requested version, including cars no longer available
+    private List<CarSummaryResponse> cars;
+
+    private List<Long> deleted;
+}
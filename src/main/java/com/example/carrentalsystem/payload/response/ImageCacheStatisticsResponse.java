@@ -0,0 +1,20 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ImageCacheStatisticsResponse {
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    private int entries;
+
+    private long usedBytes;
+
+    private long capacityBytes;
+}
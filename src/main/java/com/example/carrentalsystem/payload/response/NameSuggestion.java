@@ -0,0 +1,19 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class NameSuggestion {
+    public static final String TYPE_BRAND = "brand";
+    public static final String TYPE_MODEL = "model";
+
+    // "brand" or "model"
+    private String type;
+
+    private String name;
+
+    // Number of typos between the query and the name, 0 for a plain prefix match
+    private int distance;
+}
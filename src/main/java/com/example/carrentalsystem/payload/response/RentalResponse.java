@@ -0,0 +1,37 @@
+package com.example.carrentalsystem.payload.response;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.models.RentalStatusEnum;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Getter
+public class RentalResponse {
+    private final Long id;
+
+    private final LocalDate startDate;
+
+    private final LocalDate endDate;
+
+    private final LocalDate addDate;
+
+    private final Long price;
+
+    private final RentalStatusEnum rentalStatus;
+
+    private final CarSummaryResponse car;
+
+    // Flat, so rentals can be read with a single constructor expression together with their cars
+    public RentalResponse(Long id, LocalDate startDate, LocalDate endDate, LocalDate addDate, Long price, RentalStatusEnum rentalStatus,
+                          Long carID, String brand, String model, Integer year, Integer mileage, FuelTypeEnum fuelType,
+                          Integer horsePower, String capacity, Integer carPrice, boolean available, Long imageID) {
+        this.id = id;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.addDate = addDate;
+        this.price = price;
+        this.rentalStatus = rentalStatus;
+        this.car = new CarSummaryResponse(carID, brand, model, year, mileage, fuelType, horsePower, capacity, carPrice, available, imageID);
+    }
+}
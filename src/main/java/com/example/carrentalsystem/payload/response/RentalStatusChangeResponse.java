@@ -0,0 +1,21 @@
+package com.example.carrentalsystem.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RentalStatusChangeResponse {
+    public enum Result {
+        CHANGED,
+        NOT_FOUND,
+        // The current status of the rental cannot be changed to the requested one
+        NOT_ALLOWED,
+        // The rental would be booked again, but its car is already booked for some of its days
+        CONFLICT
+    }
+
+    private Long rentalID;
+
+    private Result result;
+}
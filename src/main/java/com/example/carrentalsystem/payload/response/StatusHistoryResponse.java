@@ -0,0 +1,15 @@
+package com.example.carrentalsystem.payload.response;
+
+import com.example.carrentalsystem.models.RentalStatusEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Getter
+@AllArgsConstructor
+public class StatusHistoryResponse {
+    private RentalStatusEnum status;
+
+    private LocalDate changeDate;
+}
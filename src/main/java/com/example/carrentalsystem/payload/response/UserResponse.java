@@ -0,0 +1,17 @@
+package com.example.carrentalsystem.payload.response;
+
+import com.example.carrentalsystem.models.RoleEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserResponse {
+    private Long id;
+
+    private String username;
+
+    private String email;
+
+    private RoleEnum role;
+}
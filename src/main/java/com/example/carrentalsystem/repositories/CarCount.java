@@ -0,0 +1,7 @@
+package com.example.carrentalsystem.repositories;
+
+public interface CarCount {
+    Long getId();
+
+    long getCars();
+}
@@ -2,7 +2,40 @@ package com.example.carrentalsystem.repositories;
 
 import com.example.carrentalsystem.models.CarImage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface CarImageRepository extends JpaRepository<CarImage, Long> {
+    @Query("select c.carImage from Car c where c.id = ?1")
+    Optional<CarImage> findByCarId(Long carID);
+
+    Optional<CarImage> findByContentHash(String contentHash);
+
+    Optional<CarImage> findFirstByDefaultImageTrue();
+
+    boolean existsByDefaultImageTrue();
+
+    @Modifying
+    @Transactional
+    @Query("update CarImage i set i.referenceCount = i.referenceCount + ?2 where i.imageID = ?1")
+    int addReferences(Long imageID, int count);
+
+    @Modifying
+    @Query("update CarImage i set i.defaultImage = true where i.imageID = ?1")
+    int markDefault(Long imageID);
+
+    @Modifying
+    @Query("delete from CarImage i where i.imageID = ?1 and i.referenceCount <= 0 and i.defaultImage = false")
+    int deleteIfUnreferenced(Long imageID);
+
+    @Query("select i.imageID from CarImage i where i.fileContent is not null")
+    List<Long> findIdsWithFileContent();
+
+    @Query("select i.fileContent from CarImage i where i.imageID = ?1")
+    byte[] findFileContentById(Long imageID);
 
 }
@@ -1,21 +1,48 @@
 package com.example.carrentalsystem.repositories;
 
 import com.example.carrentalsystem.models.Car;
+import com.example.carrentalsystem.models.CarImage;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface CarRepository extends JpaRepository<Car, Long> {
-    List<Car> findByAvailable(boolean available);
+public interface CarRepository extends JpaRepository<Car, Long>, CarSearchRepository {
+    // Catalog rows are read as CarSummaryResponse in one statement, the brand, model and fuel type are joined instead of loaded per car
+    String SUMMARY = "select new com.example.carrentalsystem.payload.response.CarSummaryResponse(c.id, b.name, m.name, c.year, c.mileage, f.name, "
+            + "c.horsePower, c.capacity, c.price, c.available, c.carImage.imageID) from Car c join c.brand b join c.model m join c.fuelType f ";
 
+    @Query(SUMMARY + "order by c.id asc")
+    List<CarSummaryResponse> findAllSummaries();
+
+    @Query(SUMMARY + "where c.id in ?1 order by c.id asc")
+    List<CarSummaryResponse> findSummariesByIdIn(Collection<Long> carIDs);
+
+    // The image is fetched with the car, it is still needed after the transaction that loaded the car has ended
+    @EntityGraph(attributePaths = "carImage")
     Car getCarById(Long carID);
 
-    long countByModelName(String name);
+    @Query("select c.brand.id as id, count(c) as cars from Car c group by c.brand.id")
+    List<CarCount> countCarsByBrand();
+
+    @Query("select c.model.id as id, count(c) as cars from Car c group by c.model.id")
+    List<CarCount> countCarsByModel();
 
-    long countByBrandName(String name);
+    @Query("select c.id from Car c where c.carImage = ?1")
+    List<Long> findIdsByCarImage(CarImage carImage);
 
-    boolean existsByBrandName(String name);
+    @Modifying
+    @Query("update Car c set c.carImage = ?2 where c.carImage = ?1")
+    int replaceImage(CarImage previous, CarImage replacement);
 
-    boolean existsByModelName(String name);
+    @Query(SUMMARY + "where c.id > ?1 order by c.id asc")
+    List<CarSummaryResponse> findSummariesAfterId(Long lastId, Pageable pageable);
 
+    @Query(SUMMARY + "where (c.price > ?1 or (c.price = ?1 and c.id > ?2)) order by c.price asc, c.id asc")
+    List<CarSummaryResponse> findSummariesAfterPrice(Integer lastPrice, Long lastId, Pageable pageable);
 }
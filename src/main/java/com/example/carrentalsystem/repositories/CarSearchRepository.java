@@ -0,0 +1,25 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.RentalStatus;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarFilter;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface CarSearchRepository {
+    List<CarSummaryResponse> search(CarSearchRequest request);
+
+    // Applies the changes to every car matching the filter with a single UPDATE and returns the number of cars changed
+    int update(CarBulkUpdateRequest request);
+
+    // Locks the cars matching the filter until the transaction ends, so a bulk UPDATE changes exactly these cars
+    List<Long> findLockedIds(CarFilter filter);
+
+    // Cars matching the filter that have a rental in the given status on the given day. The rentals covering the day
+    // stay locked until the transaction ends, so none of them can reach the status after the check.
+    List<Long> findRentedIds(CarFilter filter, RentalStatus status, LocalDate day);
+
+}
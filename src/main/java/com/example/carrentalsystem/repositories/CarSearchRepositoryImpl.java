@@ -0,0 +1,191 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.*;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarFilter;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CarSearchRepositoryImpl implements CarSearchRepository {
+    private static final int MIN_PRICE = 50;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CarSummaryResponse> search(CarSearchRequest request) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CarSummaryResponse> query = cb.createQuery(CarSummaryResponse.class);
+        Root<Car> car = query.from(Car.class);
+        Join<Car, Brand> brand = car.join("brand");
+        Join<Car, CarModel> model = car.join("model");
+        Join<Car, FuelType> fuelType = car.join("fuelType");
+
+        // Only the columns needed by the catalog are selected, the image content is never loaded
+        query.select(cb.construct(CarSummaryResponse.class,
+                car.get("id"),
+                brand.get("name"),
+                model.get("name"),
+                car.get("year"),
+                car.get("mileage"),
+                fuelType.get("name"),
+                car.get("horsePower"),
+                car.get("capacity"),
+                car.get("price"),
+                car.get("available"),
+                car.get("carImage").get("imageID")
+        ));
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(car.get("available")));
+
+        if(request.getBrand() != null) {
+            predicates.add(cb.equal(brand.get("name"), request.getBrand()));
+        }
+
+        if(request.getModel() != null) {
+            predicates.add(cb.equal(model.get("name"), request.getModel()));
+        }
+
+        if(request.getFuelType() != null) {
+            predicates.add(cb.equal(car.get("fuelType").get("id"), request.getFuelType()));
+        }
+
+        if(request.getCapacity() != null) {
+            predicates.add(cb.equal(car.get("capacity"), request.getCapacity()));
+        }
+
+        addRange(cb, predicates, car.get("price"), request.getMinPrice(), request.getMaxPrice());
+        addRange(cb, predicates, car.get("horsePower"), request.getMinHorsePower(), request.getMaxHorsePower());
+        addRange(cb, predicates, car.get("year"), request.getMinYear(), request.getMaxYear());
+
+        query.where(predicates.toArray(new Predicate[0]));
+
+        Path<Object> sortPath = car.get(request.getSort());
+        if("desc".equals(request.getDirection())) {
+            query.orderBy(cb.desc(sortPath), cb.desc(car.get("id")));
+        } else {
+            query.orderBy(cb.asc(sortPath), cb.asc(car.get("id")));
+        }
+
+        // Requests are validated against an overflow, other callers get an ArithmeticException instead of a wrapped offset
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.multiplyExact(request.getPage(), request.getSize()))
+                .setMaxResults(request.getSize())
+                .getResultList();
+    }
+
+    @Override
+    public int update(CarBulkUpdateRequest request) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Car> update = cb.createCriteriaUpdate(Car.class);
+        Root<Car> car = update.from(Car.class);
+        Path<Integer> price = car.get("price");
+
+        if(request.getPrice() != null) {
+            update.set(price, request.getPrice());
+        }
+
+        // Rounded half up to whole units and never below the minimum price of a car: half a unit is added and the
+        // result floored, the same whether the database divides integers exactly or truncating
+        if(request.getPriceChangePercent() != null) {
+            Expression<Number> scaled = cb.quot(cb.sum(cb.prod(price, 100 + request.getPriceChangePercent()), 50), 100);
+            Expression<Integer> adjusted = cb.toInteger(cb.function("floor", Number.class, scaled));
+            update.set(price, cb.<Integer>selectCase().when(cb.lessThan(adjusted, MIN_PRICE), MIN_PRICE).otherwise(adjusted));
+        }
+
+        if(request.getAvailable() != null) {
+            update.set(car.<Boolean>get("available"), request.getAvailable());
+        }
+
+        if(request.getFuelType() != null) {
+            update.set(car.get("fuelType"), entityManager.getReference(FuelType.class, request.getFuelType()));
+        }
+
+        update.where(filter(cb, update, car, request.getFilter()));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public List<Long> findLockedIds(CarFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Car> car = query.from(Car.class);
+
+        query.select(car.get("id")).where(filter(cb, query, car, filter));
+
+        return entityManager.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    // Every rental of the cars covering the day is read and locked, whatever its status, only then are the ones in
+    // the given status picked. A rental that is not locked could still be moved to that status after the check.
+    @Override
+    public List<Long> findRentedIds(CarFilter filter, RentalStatus status, LocalDate day) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Rental> rental = query.from(Rental.class);
+        Join<Rental, Car> car = rental.join("car");
+
+        List<Predicate> predicates = new ArrayList<>(List.of(filter(cb, query, car, filter)));
+        predicates.add(cb.lessThanOrEqualTo(rental.get("startDate"), day));
+        predicates.add(cb.greaterThanOrEqualTo(rental.get("endDate"), day));
+        query.multiselect(car.get("id"), rental.get("rentalStatus").get("id")).where(predicates.toArray(new Predicate[0]));
+
+        return entityManager.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList().stream()
+                .filter(row -> status.getId().equals(row.get(1, Long.class)))
+                .map(row -> row.get(0, Long.class))
+                .distinct()
+                .toList();
+    }
+
+    // Brand and model are matched by name through subqueries, joins are not allowed in a bulk UPDATE
+    private Predicate[] filter(CriteriaBuilder cb, CommonAbstractCriteria criteria, From<?, Car> car, CarFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+
+        if(filter.getBrand() != null) {
+            Subquery<Long> brand = criteria.subquery(Long.class);
+            Root<Brand> brands = brand.from(Brand.class);
+            brand.select(brands.get("id")).where(cb.equal(brands.get("name"), filter.getBrand()));
+            predicates.add(car.get("brand").get("id").in(brand));
+        }
+
+        if(filter.getModel() != null) {
+            Subquery<Long> model = criteria.subquery(Long.class);
+            Root<CarModel> models = model.from(CarModel.class);
+            model.select(models.get("id")).where(cb.equal(models.get("name"), filter.getModel()));
+            predicates.add(car.get("model").get("id").in(model));
+        }
+
+        if(filter.getIds() != null) {
+            predicates.add(car.get("id").in(filter.getIds()));
+        }
+
+        addRange(cb, predicates, car.get("year"), filter.getMinYear(), filter.getMaxYear());
+
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private void addRange(CriteriaBuilder cb, List<Predicate> predicates, Path<Integer> path, Integer min, Integer max) {
+        if(min != null) {
+            predicates.add(cb.greaterThanOrEqualTo(path, min));
+        }
+
+        if(max != null) {
+            predicates.add(cb.lessThanOrEqualTo(path, max));
+        }
+    }
+}
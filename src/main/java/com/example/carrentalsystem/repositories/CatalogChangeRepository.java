@@ -0,0 +1,109 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.CatalogChange;
+import com.example.carrentalsystem.models.IdGenerators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Rows of the catalog_changes table. Versions are counted by the catalog_changes row of id_generators, which is
+// locked by the writing transaction until it commits. Versions therefore become visible in the order they were taken,
+// a node reading the changes after its version never skips one that commits later.
+@Repository
+public class CatalogChangeRepository {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogChangeRepository.class);
+
+    private static final String SEGMENT = CatalogChange.TABLE;
+
+    private static final String SELECT_FOR_UPDATE = "select " + IdGenerators.VALUE_COLUMN + " from " + IdGenerators.TABLE
+            + " where " + IdGenerators.SEGMENT_COLUMN + " = ? for update";
+    private static final String SELECT_NEXT = "select " + IdGenerators.VALUE_COLUMN + " from " + IdGenerators.TABLE
+            + " where " + IdGenerators.SEGMENT_COLUMN + " = ?";
+    private static final String UPDATE = "update " + IdGenerators.TABLE + " set " + IdGenerators.VALUE_COLUMN + " = ? where "
+            + IdGenerators.SEGMENT_COLUMN + " = ?";
+    private static final String INSERT_GENERATOR = "insert into " + IdGenerators.TABLE + " (" + IdGenerators.SEGMENT_COLUMN + ", "
+            + IdGenerators.VALUE_COLUMN + ") select ?, coalesce(max(version), 0) + 1 from " + CatalogChange.TABLE;
+
+    private static final String INSERT = "insert into " + CatalogChange.TABLE + " (version, car_id, changed_at) values (?, ?, ?)";
+    private static final String SELECT_SINCE = "select version, car_id from " + CatalogChange.TABLE
+            + " where version > ? order by version, car_id limit ?";
+    // Bounded batches like the purge of reservation slots
+    private static final String DELETE_BEFORE = "delete from " + CatalogChange.TABLE + " where changed_at < ? limit ?";
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+
+    public CatalogChangeRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   @Value("${crs.app.catalog.changeLogRetention}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Joins the transaction that changed the cars, so the version is only taken when the change commits
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+    }
+
+    // Safe to run repeatedly, the counter is only created when it is missing
+    public void migrate() {
+        if(jdbcTemplate.queryForList(SELECT_NEXT, Long.class, SEGMENT).isEmpty()){
+            jdbcTemplate.update(INSERT_GENERATOR, SEGMENT);
+        }
+    }
+
+    // Returns the version of the change
+    public long record(Collection<Long> carIDs) {
+        return transactionTemplate.execute(status -> {
+            List<Long> next = jdbcTemplate.queryForList(SELECT_FOR_UPDATE, Long.class, SEGMENT);
+            if(next.isEmpty()){
+                throw new IllegalStateException("Error: ID generator " + SEGMENT + " is not found.");
+            }
+
+            long version = next.get(0);
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update(UPDATE, version + 1, SEGMENT);
+            jdbcTemplate.batchUpdate(INSERT, carIDs, carIDs.size(), (statement, carID) -> {
+                statement.setLong(1, version);
+                statement.setLong(2, carID);
+                statement.setObject(3, now);
+            });
+            return version;
+        });
+    }
+
+    // Latest committed version
+    public long findVersion() {
+        List<Long> next = jdbcTemplate.queryForList(SELECT_NEXT, Long.class, SEGMENT);
+        return next.isEmpty() ? 0 : next.get(0) - 1;
+    }
+
+    // Up to limit changed cars after the given version, ordered by version
+    public List<CatalogChange> findSince(long version, int limit) {
+        return jdbcTemplate.query(SELECT_SINCE, (result, row) -> new CatalogChange(result.getLong(1), result.getLong(2), null), version, limit);
+    }
+
+    // Nodes that fall further behind than the retention find a gap in the versions and load the whole catalog again
+    @Scheduled(fixedDelayString = "${crs.app.catalog.changeLogPurgeInterval}", initialDelayString = "${crs.app.catalog.changeLogPurgeInterval}")
+    public void purgeExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_BEFORE, before, PURGE_BATCH_SIZE);
+            purged += deleted;
+        } while(deleted == PURGE_BATCH_SIZE);
+
+        if(purged > 0){
+            logger.info("Purged {} catalog changes before {}", purged, before);
+        }
+    }
+}
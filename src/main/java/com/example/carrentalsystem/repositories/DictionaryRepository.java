@@ -0,0 +1,28 @@
+package com.example.carrentalsystem.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.transaction.annotation.Transactional;
+
+@NoRepositoryBean
+public interface DictionaryRepository<T> extends JpaRepository<T, Long> {
+    T findByName(String name);
+
+    @Modifying
+    @Transactional
+    @Query("update #{#entityName} e set e.carCount = e.carCount + ?2 where e.id = ?1")
+    int addCars(Long id, int count);
+
+    @Modifying
+    @Transactional
+    @Query("update #{#entityName} e set e.carCount = ?2 where e.id = ?1")
+    int setCarCount(Long id, int count);
+
+    // Only removes the entry when no other car has started using it in the meantime
+    @Modifying
+    @Transactional
+    @Query("delete from #{#entityName} e where e.id = ?1 and e.carCount <= 1")
+    int deleteIfUnused(Long id);
+}
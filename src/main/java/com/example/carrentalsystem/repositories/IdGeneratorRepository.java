@@ -0,0 +1,77 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.IdGenerators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+// Rows of the id_generators table used by the @TableGenerator of each entity.
+// Hibernate uses the pooled-lo optimizer, so next_val is always the first ID of the next free block.
+@Repository
+public class IdGeneratorRepository {
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorRepository.class);
+
+    // Segment (the table name) and ID column of every entity using a table generator
+    private static final Map<String, String> ID_COLUMNS = Map.of(
+            "cars", "id",
+            "rentals", "id",
+            "status_history", "id",
+            "users", "id",
+            "brands", "id",
+            "car_models", "id",
+            "car_images", "image_id");
+
+    private static final String SELECT_FOR_UPDATE = "select " + IdGenerators.VALUE_COLUMN + " from " + IdGenerators.TABLE
+            + " where " + IdGenerators.SEGMENT_COLUMN + " = ? for update";
+    private static final String UPDATE = "update " + IdGenerators.TABLE + " set " + IdGenerators.VALUE_COLUMN + " = ? where "
+            + IdGenerators.SEGMENT_COLUMN + " = ?";
+    private static final String INSERT = "insert into " + IdGenerators.TABLE + " (" + IdGenerators.SEGMENT_COLUMN + ", "
+            + IdGenerators.VALUE_COLUMN + ") values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public IdGeneratorRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Tables created while IDs were AUTO_INCREMENT already hold rows, so every generator is moved past the highest ID
+    // before anything is inserted. Safe to run repeatedly, a generator that is already ahead is left alone.
+    public void migrate() {
+        ID_COLUMNS.forEach((segment, idColumn) -> transactionTemplate.executeWithoutResult(status -> {
+            long next = jdbcTemplate.queryForObject("select coalesce(max(" + idColumn + "), 0) + 1 from " + segment, Long.class);
+            List<Long> current = jdbcTemplate.queryForList(SELECT_FOR_UPDATE, Long.class, segment);
+
+            if(current.isEmpty()){
+                logger.info("Starting ID generator {} at {}", segment, next);
+                jdbcTemplate.update(INSERT, segment, next);
+            } else if(current.get(0) < next){
+                logger.info("Moving ID generator {} from {} to {}", segment, current.get(0), next);
+                jdbcTemplate.update(UPDATE, next, segment);
+            }
+        }));
+    }
+
+    // Reserves a block of IDs for rows inserted without Hibernate and returns the first one.
+    // Runs in its own transaction, like Hibernate's generator, so the row lock is not held until the caller commits.
+    public long allocate(String segment, int count) {
+        return transactionTemplate.execute(status -> {
+            List<Long> current = jdbcTemplate.queryForList(SELECT_FOR_UPDATE, Long.class, segment);
+            if(current.isEmpty()){
+                throw new IllegalStateException("Error: ID generator " + segment + " is not found.");
+            }
+
+            jdbcTemplate.update(UPDATE, current.get(0) + count, segment);
+            return current.get(0);
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.carrentalsystem.repositories;
+
+import java.time.LocalDate;
+
+public interface RentalPeriod {
+    Long getId();
+
+    Long getCarId();
+
+    LocalDate getStartDate();
+
+    LocalDate getEndDate();
+}
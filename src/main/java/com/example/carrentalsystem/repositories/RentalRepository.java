@@ -2,14 +2,61 @@ package com.example.carrentalsystem.repositories;
 
 import com.example.carrentalsystem.models.RentalStatusEnum;
 import com.example.carrentalsystem.models.Rental;
+import com.example.carrentalsystem.models.RentalStatus;
+import com.example.carrentalsystem.payload.response.RentalResponse;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface RentalRepository extends JpaRepository<Rental, Long> {
-    @Query("select (count(r) > 0) from Rental r where (r.startDate >= ?1 and r.endDate <= ?1) and r.rentalStatus.name = ?2")
+    // Rentals are read together with their status and car in one statement
+    String RESPONSE = "select new com.example.carrentalsystem.payload.response.RentalResponse(r.id, r.startDate, r.endDate, r.addDate, r.price, s.name, "
+            + "c.id, b.name, m.name, c.year, c.mileage, f.name, c.horsePower, c.capacity, c.price, c.available, c.carImage.imageID) "
+            + "from Rental r join r.rentalStatus s join r.car c join c.brand b join c.model m join c.fuelType f ";
+
+    @Query(RESPONSE + "order by r.id asc")
+    List<RentalResponse> findAllResponses();
+
+    @Query(RESPONSE + "where r.id = ?1")
+    Optional<RentalResponse> findResponseById(Long rentalID);
+
+    @Query(RESPONSE + "where r.user.id = ?1 order by r.id asc")
+    List<RentalResponse> findResponsesByUserId(Long userID);
+
+    @Query("select (count(r) > 0) from Rental r where r.startDate <= ?1 and r.endDate >= ?1 and r.rentalStatus.name = ?2")
     boolean existsByRentalDateAndRentalStatus(LocalDate startDate, RentalStatusEnum name);
 
     boolean existsByCarId(Long id);
+
+    // Range scan of a single car and status on the (car_id, rental_status_id, start_date, end_date) index
+    @Query("select (count(r) > 0) from Rental r where r.car.id = ?1 and r.rentalStatus = ?2 and r.startDate <= ?3 and r.endDate >= ?3")
+    boolean existsActiveByCarId(Long carID, RentalStatus status, LocalDate date);
+
+    @Query("select r.id as id, r.car.id as carId, r.startDate as startDate, r.endDate as endDate from Rental r where r.rentalStatus.name in ?1")
+    List<RentalPeriod> findPeriodsByRentalStatusNameIn(Collection<RentalStatusEnum> names);
+
+    @Query("select r.id as id, r.car.id as carId, r.startDate as startDate, r.endDate as endDate from Rental r where r.user.id = ?1")
+    List<RentalPeriod> findPeriodsByUserId(Long userID);
+
+    // Locks the rental until the transaction ends, so its status cannot change between the check and the update
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Rental r where r.id = ?1")
+    Optional<Rental> findLockedById(Long rentalID);
+
+    // Locks the rentals until the transaction ends, so their status cannot change between the check and the update
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r.id as id, r.car.id as carId, r.startDate as startDate, r.endDate as endDate, r.rentalStatus.id as statusId "
+            + "from Rental r where r.id in ?1")
+    List<RentalState> findStatesByIdIn(Collection<Long> rentalIDs);
+
+    @Modifying
+    @Query("update Rental r set r.rentalStatus = ?1 where r.id in ?2")
+    int updateStatusByIdIn(RentalStatus status, Collection<Long> rentalIDs);
 }
@@ -0,0 +1,6 @@
+package com.example.carrentalsystem.repositories;
+
+// The status is read as its ID, joining rental_statuses would lock its rows as well
+public interface RentalState extends RentalPeriod {
+    Long getStatusId();
+}
@@ -0,0 +1,118 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.ReservationSlot;
+import com.example.carrentalsystem.models.SchemaMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Rows of the reservation_slots table. A booking only locks the index entries of its own car and days, so bookings
+// of different cars never wait for each other.
+@Repository
+public class ReservationSlotRepository {
+    private static final Logger logger = LoggerFactory.getLogger(ReservationSlotRepository.class);
+
+    private static final String INSERT = "insert into " + ReservationSlot.TABLE + " (car_id, rental_day, rental_id) values (?, ?, ?)";
+    private static final String DELETE = "delete from " + ReservationSlot.TABLE + " where rental_id = ?";
+    // Locking read, so days booked by a transaction that committed after this one started are seen as well
+    private static final String SELECT_BOOKED = "select rental_day from " + ReservationSlot.TABLE
+            + " where car_id = ? and rental_day between ? and ? and rental_id <> ? order by rental_day for update";
+    private static final String SELECT_RESERVED_RENTALS = "select distinct rental_id from " + ReservationSlot.TABLE;
+    // Bounded batches, so the purge never holds the locks of a large range while bookings are made
+    private static final String DELETE_BEFORE = "delete from " + ReservationSlot.TABLE + " where rental_day < ? limit ?";
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final String MIGRATION = "reservation_slots";
+    private static final String SELECT_MIGRATION = "select count(*) from " + SchemaMigration.TABLE + " where name = ?";
+    private static final String INSERT_MIGRATION = "insert into " + SchemaMigration.TABLE + " (name, applied_at) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ReservationSlotRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // One batch for all days, sent as a single statement with rewriteBatchedStatements.
+    // Throws DuplicateKeyException when another rental already holds one of the days.
+    public void reserve(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        List<LocalDate> days = startDate.datesUntil(endDate.plusDays(1)).toList();
+
+        jdbcTemplate.batchUpdate(INSERT, days, days.size(), (statement, day) -> {
+            statement.setLong(1, carID);
+            statement.setObject(2, day);
+            statement.setLong(3, rentalID);
+        });
+    }
+
+    public void release(Long rentalID) {
+        jdbcTemplate.update(DELETE, rentalID);
+    }
+
+    public void release(Collection<Long> rentalIDs) {
+        jdbcTemplate.batchUpdate(DELETE, rentalIDs, rentalIDs.size(), (statement, rentalID) -> statement.setLong(1, rentalID));
+    }
+
+    // Days between startDate and endDate held by rentals other than the given one
+    public List<LocalDate> findBookedDays(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.queryForList(SELECT_BOOKED, LocalDate.class, carID, startDate, endDate, rentalID);
+    }
+
+    // Reserves the days of rentals booked before this table existed. Runs once, the completed migration is recorded
+    // in schema_migrations and later startups neither read the rentals nor the slots. Rentals that overlap an earlier
+    // one were accepted without a check, the earlier rental keeps the days and the later one is only logged.
+    public void migrate(Supplier<List<RentalPeriod>> periods) {
+        if(jdbcTemplate.queryForObject(SELECT_MIGRATION, Long.class, MIGRATION) > 0){
+            return;
+        }
+
+        Set<Long> reserved = new HashSet<>(jdbcTemplate.queryForList(SELECT_RESERVED_RENTALS, Long.class));
+
+        periods.get().stream()
+                .filter(period -> !reserved.contains(period.getId()))
+                .sorted(Comparator.comparing(RentalPeriod::getId))
+                .forEach(period -> {
+                    try {
+                        transactionTemplate.executeWithoutResult(status ->
+                                reserve(period.getCarId(), period.getId(), period.getStartDate(), period.getEndDate()));
+                    } catch (DuplicateKeyException e) {
+                        logger.warn("Rental {} overlaps another booking of car {}, its days are not reserved", period.getId(), period.getCarId());
+                    }
+                });
+
+        jdbcTemplate.update(INSERT_MIGRATION, MIGRATION, LocalDateTime.now());
+    }
+
+    // Bookings are only checked against today and later days, the slots of past days are removed
+    @Scheduled(fixedDelayString = "${crs.app.reservations.purgeInterval}", initialDelayString = "${crs.app.reservations.purgeInterval}")
+    public void purgePastDays() {
+        LocalDate today = LocalDate.now();
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_BEFORE, today, PURGE_BATCH_SIZE);
+            purged += deleted;
+        } while(deleted == PURGE_BATCH_SIZE);
+
+        if(purged > 0){
+            logger.info("Purged {} reservation slots before {}", purged, today);
+        }
+    }
+}
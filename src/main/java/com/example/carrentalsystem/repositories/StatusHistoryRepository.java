@@ -1,8 +1,25 @@
 package com.example.carrentalsystem.repositories;
 
 import com.example.carrentalsystem.models.StatusHistory;
+import com.example.carrentalsystem.payload.response.StatusHistoryResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface StatusHistoryRepository extends JpaRepository<StatusHistory, Long> {
+    // In the order of the changes, read from the (rental_id, id) index
+    @Query("select new com.example.carrentalsystem.payload.response.StatusHistoryResponse(s.name, h.changeDate) "
+            + "from StatusHistory h join h.statusAfterChange s where h.rental.id = ?1 order by h.id asc")
+    List<StatusHistoryResponse> findResponsesByRentalId(Long rentalID);
+
+    @Modifying
+    @Query("delete from StatusHistory h where h.rental.id = ?1")
+    int deleteByRentalId(Long rentalID);
 
+    @Modifying
+    @Query("delete from StatusHistory h where h.rental.id in ?1")
+    int deleteByRentalIdIn(Collection<Long> rentalIDs);
 }
@@ -1,9 +1,12 @@
 package com.example.carrentalsystem.repositories;
 
 import com.example.carrentalsystem.models.User;
+import com.example.carrentalsystem.payload.response.UserResponse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +17,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
 
     Optional<User> findByUsername(String username);
+
+    @Query("select new com.example.carrentalsystem.payload.response.UserResponse(u.id, u.username, u.email, r.name) from User u left join u.role r order by u.id asc")
+    List<UserResponse> findAllResponses();
 }
@@ -0,0 +1,28 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.models.CarImage;
+import com.example.carrentalsystem.storage.ImageSize;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Service
+public interface CarImageService {
+    CarImage store(InputStream content) throws IOException;
+
+    CarImage storeDefault(InputStream content) throws IOException;
+
+    CarImage acquireDefault();
+
+    CarImage acquireDefault(int cars);
+
+    void release(CarImage carImage);
+
+    Resource load(CarImage carImage);
+
+    boolean hasRendition(CarImage carImage, ImageSize size);
+
+    Resource loadRendition(CarImage carImage, ImageSize size);
+}
@@ -0,0 +1,154 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.cache.ImageByteCache;
+import com.example.carrentalsystem.models.CarImage;
+import com.example.carrentalsystem.repositories.CarImageRepository;
+import com.example.carrentalsystem.storage.ImageRenditionGenerator;
+import com.example.carrentalsystem.storage.ImageSize;
+import com.example.carrentalsystem.storage.ImageStorage;
+import com.example.carrentalsystem.storage.StoredImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+@Service("carImageService")
+public class CarImageServiceImpl implements CarImageService {
+    private static final Logger logger = LoggerFactory.getLogger(CarImageServiceImpl.class);
+
+    private final CarImageRepository carImageRepository;
+    private final ImageStorage imageStorage;
+    private final ImageRenditionGenerator renditionGenerator;
+    private final ImageByteCache imageCache;
+    private final TransactionTemplate transactionTemplate;
+
+    public CarImageServiceImpl(CarImageRepository carImageRepository, ImageStorage imageStorage, ImageRenditionGenerator renditionGenerator,
+                               ImageByteCache imageCache, PlatformTransactionManager transactionManager) {
+        this.carImageRepository = carImageRepository;
+        this.imageStorage = imageStorage;
+        this.renditionGenerator = renditionGenerator;
+        this.imageCache = imageCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Not transactional: the upload is streamed to the storage before any database connection is taken, only the
+    // registration of the stored file runs in a transaction
+    @Override
+    public CarImage store(InputStream content) throws IOException {
+        return register(imageStorage.store(content), false);
+    }
+
+    @Override
+    public CarImage storeDefault(InputStream content) throws IOException {
+        return register(imageStorage.store(content), true);
+    }
+
+    // A concurrent upload of the same content may insert the row first, the second attempt then finds and reuses it
+    private CarImage register(StoredImage storedImage, boolean defaultImage) {
+        try {
+            return transactionTemplate.execute(status -> registerStored(storedImage, defaultImage));
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(status -> registerStored(storedImage, defaultImage));
+        }
+    }
+
+    private CarImage registerStored(StoredImage storedImage, boolean defaultImage) {
+        String contentHash = storedImage.getContentHash();
+
+        // Identical uploads share one stored file and one row
+        Optional<CarImage> existing = carImageRepository.findByContentHash(contentHash);
+        if(existing.isPresent()){
+            CarImage carImage = existing.get();
+            carImageRepository.addReferences(carImage.getImageID(), defaultImage ? 0 : 1);
+            if(defaultImage && !carImage.isDefaultImage()){
+                carImageRepository.markDefault(carImage.getImageID());
+                carImage.setDefaultImage(true);
+            }
+
+            return carImage;
+        }
+
+        // Flushed right away, so a duplicate content hash fails here and not at commit
+        CarImage carImage = carImageRepository.saveAndFlush(new CarImage(storedImage.getContentType(), contentHash, storedImage.getContentLength(), defaultImage ? 0 : 1, defaultImage));
+        renditionGenerator.submit(contentHash);
+        return carImage;
+    }
+
+    @Override
+    @Transactional
+    public CarImage acquireDefault() {
+        return acquireDefault(1);
+    }
+
+    @Override
+    @Transactional
+    public CarImage acquireDefault(int cars) {
+        CarImage carImage = carImageRepository.findFirstByDefaultImageTrue().orElseThrow(() -> new RuntimeException("Error: Car image is not found"));
+        carImageRepository.addReferences(carImage.getImageID(), cars);
+        return carImage;
+    }
+
+    @Override
+    @Transactional
+    public void release(CarImage carImage) {
+        carImageRepository.addReferences(carImage.getImageID(), -1);
+
+        if(carImageRepository.deleteIfUnreferenced(carImage.getImageID()) > 0 && carImage.getContentHash() != null){
+            String contentHash = carImage.getContentHash();
+
+            // The file is only removed once the row is gone for good
+            if(TransactionSynchronizationManager.isSynchronizationActive()){
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        deleteFile(contentHash);
+                    }
+                });
+            } else {
+                deleteFile(contentHash);
+            }
+        }
+    }
+
+    private void deleteFile(String contentHash) {
+        imageCache.invalidate(contentHash);
+
+        try {
+            imageStorage.delete(contentHash);
+        } catch (IOException e) {
+            logger.warn("Cannot delete image file {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    @Override
+    public Resource load(CarImage carImage) {
+        // Images not yet moved out of the database by CarImageMigration have no content hash. The BLOB is not loaded
+        // with the row, so it is read on its own here instead of through the (possibly detached) entity.
+        if(carImage.getContentHash() == null){
+            return new ByteArrayResource(carImageRepository.findFileContentById(carImage.getImageID()));
+        }
+
+        return imageStorage.load(carImage.getContentHash());
+    }
+
+    @Override
+    public boolean hasRendition(CarImage carImage, ImageSize size) {
+        return size != ImageSize.ORIGINAL && carImage.getContentHash() != null && imageStorage.hasRendition(carImage.getContentHash(), size);
+    }
+
+    @Override
+    public Resource loadRendition(CarImage carImage, ImageSize size) {
+        return imageStorage.loadRendition(carImage.getContentHash(), size);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.carrentalsystem.services;
+
+import java.util.Optional;
+
+public enum CarImportFormat {
+    // First line is a header with AddCarRequest field names, e.g. brand,model,year,mileage,fuelType,horsePower,capacity,price
+    CSV("text/csv"),
+    // One AddCarRequest JSON object per line
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    CarImportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static Optional<CarImportFormat> fromContentType(String contentType) {
+        for (CarImportFormat format : values()) {
+            if(contentType != null && contentType.toLowerCase().startsWith(format.contentType)){
+                return Optional.of(format);
+            }
+        }
+
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.payload.response.CarImportResponse;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Service
+public interface CarImportService {
+    CarImportResponse importCars(InputStream content, CarImportFormat format) throws IOException;
+}
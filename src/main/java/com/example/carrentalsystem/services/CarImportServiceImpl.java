@@ -0,0 +1,262 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.cache.CarChangedEvent;
+import com.example.carrentalsystem.cache.CarDictionary;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
+import com.example.carrentalsystem.models.Brand;
+import com.example.carrentalsystem.models.Car;
+import com.example.carrentalsystem.models.CarModel;
+import com.example.carrentalsystem.payload.request.AddCarRequest;
+import com.example.carrentalsystem.payload.response.CarImportError;
+import com.example.carrentalsystem.payload.response.CarImportResponse;
+import com.example.carrentalsystem.repositories.IdGeneratorRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+@Service("carImportService")
+public class CarImportServiceImpl implements CarImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_CAR = "insert into cars (id, brand_id, model_id, year, mileage, fuel_type_id, horse_power, capacity, price, available, car_image_image_id) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final CarDictionary carDictionary;
+    private final ReferenceDataRegistry referenceData;
+    private final CarImageService carImageService;
+    private final IdGeneratorRepository idGeneratorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+
+    public CarImportServiceImpl(CarDictionary carDictionary, ReferenceDataRegistry referenceData, CarImageService carImageService,
+                                IdGeneratorRepository idGeneratorRepository, JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager, ObjectMapper objectMapper, Validator validator,
+                                @Value("${crs.app.import.batchSize}") int batchSize) {
+        this.carDictionary = carDictionary;
+        this.referenceData = referenceData;
+        this.carImageService = carImageService;
+        this.idGeneratorRepository = idGeneratorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+    }
+
+    // The content is read line by line, only one batch of cars is held in memory at a time.
+    // Each batch is written in its own transaction, so a failing batch does not undo the batches before it.
+    @Override
+    public CarImportResponse importCars(InputStream content, CarImportFormat format) throws IOException {
+        Report report = new Report();
+        List<Row> batch = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            String[] header = null;
+            long lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if(line.isBlank()){
+                    continue;
+                }
+
+                if(format == CarImportFormat.CSV && header == null){
+                    header = splitCsvLine(line);
+                    continue;
+                }
+
+                try {
+                    AddCarRequest request = format == CarImportFormat.CSV ? parseCsv(header, line) : objectMapper.readValue(line, AddCarRequest.class);
+                    Optional<String> error = validate(request);
+
+                    if(error.isPresent()){
+                        report.reject(lineNumber, error.get());
+                        continue;
+                    }
+
+                    batch.add(new Row(lineNumber, request));
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    report.reject(lineNumber, "Error: Invalid row.");
+                }
+
+                if(batch.size() == batchSize){
+                    write(batch, report);
+                    batch.clear();
+                }
+            }
+        }
+
+        if(!batch.isEmpty()){
+            write(batch, report);
+        }
+
+        return report.toResponse();
+    }
+
+    private void write(List<Row> batch, Report report) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            report.imported += batch.size();
+        } catch (DataAccessException | IllegalStateException e) {
+            batch.forEach(row -> report.reject(row.line, "Error: Batch could not be saved."));
+        }
+    }
+
+    // Brands, models and the default image are counted once per batch instead of once per car
+    private void insert(List<Row> batch) {
+        Map<String, Long> brandIDs = acquire(batch, AddCarRequest::getBrand, (name, cars) -> carDictionary.acquireBrand(name, cars).getId());
+        Map<String, Long> modelIDs = acquire(batch, AddCarRequest::getModel, (name, cars) -> carDictionary.acquireModel(name, cars).getId());
+        Long imageID = carImageService.acquireDefault(batch.size()).getImageID();
+        long firstID = idGeneratorRepository.allocate("cars", batch.size());
+        AtomicLong carIDs = new AtomicLong(firstID);
+
+        jdbcTemplate.batchUpdate(INSERT_CAR, batch, batch.size(), (statement, row) -> {
+            AddCarRequest request = row.request;
+            statement.setLong(1, carIDs.getAndIncrement());
+            statement.setLong(2, brandIDs.get(request.getBrand()));
+            statement.setLong(3, modelIDs.get(request.getModel()));
+            statement.setInt(4, request.getYear());
+            statement.setInt(5, request.getMileage());
+            statement.setLong(6, request.getFuelType());
+            statement.setInt(7, request.getHorsePower());
+            statement.setString(8, request.getCapacity());
+            statement.setInt(9, request.getPrice());
+            statement.setBoolean(10, true);
+            statement.setLong(11, imageID);
+        });
+
+        eventPublisher.publishEvent(new CarChangedEvent(LongStream.range(firstID, firstID + batch.size()).boxed().toList()));
+    }
+
+    private static Map<String, Long> acquire(List<Row> batch, Function<AddCarRequest, String> name, NameAcquirer acquirer) {
+        Map<String, Long> cars = batch.stream().collect(Collectors.groupingBy(row -> name.apply(row.request), Collectors.counting()));
+
+        Map<String, Long> ids = new HashMap<>();
+        cars.forEach((value, count) -> ids.put(value, acquirer.acquire(value, count.intValue())));
+        return ids;
+    }
+
+    // Rows are checked against the same constraints as POST /api/car and the entities it creates
+    private Optional<String> validate(AddCarRequest request) {
+        List<String> violations = messages(validator.validate(request));
+
+        if(violations.isEmpty()){
+            violations.addAll(messages(validator.validate(new Car(null, null, request.getYear(), request.getMileage(), null,
+                    request.getHorsePower(), request.getCapacity(), request.getPrice(), true, null))));
+            violations.addAll(messages(validator.validateValue(Brand.class, "name", request.getBrand())));
+            violations.addAll(messages(validator.validateValue(CarModel.class, "name", request.getModel())));
+        }
+
+        if(!violations.isEmpty()){
+            return Optional.of(String.join(", ", violations));
+        }
+
+        if(referenceData.findFuelType(request.getFuelType()).isEmpty()){
+            return Optional.of("Error: Fuel type is not found.");
+        }
+
+        return Optional.empty();
+    }
+
+    private static List<String> messages(Set<? extends ConstraintViolation<?>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private AddCarRequest parseCsv(String[] header, String line) {
+        String[] values = splitCsvLine(line);
+        if(values.length != header.length){
+            throw new IllegalArgumentException("Error: Wrong number of columns.");
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fields.put(header[i].trim(), values[i].isEmpty() ? null : values[i]);
+        }
+
+        return objectMapper.convertValue(fields, AddCarRequest.class);
+    }
+
+    // Fields may be quoted, a quote inside a quoted field is written twice. Fields cannot span several lines.
+    static String[] splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                } else if(c == '"'){
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"'){
+                quoted = true;
+            } else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private interface NameAcquirer {
+        Long acquire(String name, int cars);
+    }
+
+    private record Row(long line, AddCarRequest request) {
+    }
+
+    private static class Report {
+        private long imported;
+        private long rejected;
+        private final List<CarImportError> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected++;
+            if(errors.size() < MAX_REPORTED_ERRORS){
+                errors.add(new CarImportError(line, message));
+            }
+        }
+
+        CarImportResponse toResponse() {
+            return new CarImportResponse(imported, rejected, errors);
+        }
+    }
+}
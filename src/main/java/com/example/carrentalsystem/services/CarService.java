@@ -1,31 +1,55 @@
 package com.example.carrentalsystem.services;
 
 import com.example.carrentalsystem.models.Car;
+import com.example.carrentalsystem.models.CarImage;
 import com.example.carrentalsystem.payload.request.AddCarRequest;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarCursor;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
 import com.example.carrentalsystem.payload.request.EditCarRequest;
+import com.example.carrentalsystem.payload.response.CarPageResponse;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.CatalogChangesResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public interface CarService {
-    List<Car> findAvailableCars();
+    List<CarSummaryResponse> findAvailableCars();
 
-    List<Car> findAll();
+    CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size);
+
+    CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size, LocalDate from, LocalDate to);
+
+    CarPageResponse<CarSummaryResponse> findAll(CarCursor cursor, int size);
+
+    List<CarSummaryResponse> search(CarSearchRequest request);
 
     boolean existsById(Long carID);
 
     Car getCarById(Long carID);
 
+    Optional<CarSummaryResponse> findSummaryById(Long carID);
+
+    CatalogChangesResponse findChanges(long since);
+
     void add(AddCarRequest carRequest);
 
-    void changeImage(Long carID, MultipartFile file) throws IOException;
+    void changeImage(Long carID, InputStream content) throws IOException;
+
+    CarImage getImage(Long carID);
 
     void delete(Car car);
 
     void changeStatus(Car car);
 
     void update(Long carID, EditCarRequest carRequest);
+
+    // Throws CarsRentedException when cars with an accepted rental today would be withdrawn
+    int update(CarBulkUpdateRequest request);
 }
@@ -1,35 +1,104 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.CarAvailabilityIndex;
+import com.example.carrentalsystem.cache.CarCatalog;
+import com.example.carrentalsystem.cache.CarChangedEvent;
+import com.example.carrentalsystem.cache.CarDictionary;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.*;
 import com.example.carrentalsystem.payload.request.AddCarRequest;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarCursor;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
 import com.example.carrentalsystem.payload.request.EditCarRequest;
+import com.example.carrentalsystem.payload.response.CarPageResponse;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.CatalogChangesResponse;
 import com.example.carrentalsystem.repositories.*;
-import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 @Service("carService")
-@RequiredArgsConstructor
 public class CarServiceImpl implements CarService {
     private final CarRepository carRepository;
-    private final BrandRepository brandRepository;
-    private final CarModelRepository carModelRepository;
+    private final CarDictionary carDictionary;
     private final CarImageRepository carImageRepository;
-    private final FuelTypeRepository fuelTypeRepository;
+    private final CarImageService carImageService;
+    private final ReferenceDataRegistry referenceData;
+    private final CarAvailabilityIndex availabilityIndex;
+    private final CarCatalog catalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public CarServiceImpl(CarRepository carRepository, CarDictionary carDictionary, CarImageRepository carImageRepository,
+                          CarImageService carImageService, ReferenceDataRegistry referenceData, CarAvailabilityIndex availabilityIndex,
+                          CarCatalog catalog, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.carRepository = carRepository;
+        this.carDictionary = carDictionary;
+        this.carImageRepository = carImageRepository;
+        this.carImageService = carImageService;
+        this.referenceData = referenceData;
+        this.availabilityIndex = availabilityIndex;
+        this.catalog = catalog;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
+    // Catalog reads are served from the in-memory snapshot, the admin listings below still read the database
     @Override
-    public List<Car> findAvailableCars() {
-        return carRepository.findByAvailable(true);
+    public List<CarSummaryResponse> findAvailableCars() {
+        return catalog.getSnapshot().findAvailable();
     }
 
     @Override
-    public List<Car> findAll() {
-        return carRepository.findAll();
+    public CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size) {
+        // One extra row is read to find out whether there is a next page
+        return toPage(catalog.getSnapshot().findAvailableAfter(cursor, size + 1, carID -> true), cursor.getSort(), size);
+    }
+
+    @Override
+    public CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size, LocalDate from, LocalDate to) {
+        List<CarSummaryResponse> cars = catalog.getSnapshot().findAvailableAfter(cursor, size + 1,
+                carID -> availabilityIndex.isFree(carID, from, to));
+
+        return toPage(cars, cursor.getSort(), size);
+    }
+
+    @Override
+    public CarPageResponse<CarSummaryResponse> findAll(CarCursor cursor, int size) {
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<CarSummaryResponse> cars = CarCursor.SORT_PRICE.equals(cursor.getSort())
+                ? carRepository.findSummariesAfterPrice(cursor.getLastPrice(), cursor.getLastId(), limit)
+                : carRepository.findSummariesAfterId(cursor.getLastId(), limit);
+
+        return toPage(cars, cursor.getSort(), size);
+    }
+
+    @Override
+    public List<CarSummaryResponse> search(CarSearchRequest request) {
+        return carRepository.search(request);
+    }
+
+    private CarPageResponse<CarSummaryResponse> toPage(List<CarSummaryResponse> cars, String sort, int size) {
+        if(cars.size() <= size) {
+            return new CarPageResponse<>(cars, null);
+        }
+
+        List<CarSummaryResponse> page = cars.subList(0, size);
+        CarSummaryResponse last = page.get(size - 1);
+
+        return new CarPageResponse<>(page, new CarCursor(sort, last.getId(), last.getPrice()).encode());
     }
 
     @Override
@@ -42,24 +111,26 @@ public class CarServiceImpl implements CarService {
         return carRepository.getCarById(carID);
     }
 
-    private Brand addBrand(String brandName) {
-        return Optional.ofNullable(brandRepository.findByName(brandName)).orElseGet(() -> brandRepository.save(new Brand(brandName)));
+    @Override
+    public Optional<CarSummaryResponse> findSummaryById(Long carID) {
+        return catalog.getSnapshot().findById(carID);
     }
 
-    private CarModel addModel(String modelName) {
-        return Optional.ofNullable(carModelRepository.findByName(modelName)).orElseGet(() -> carModelRepository.save(new CarModel(modelName)));
+    @Override
+    public CatalogChangesResponse findChanges(long since) {
+        return catalog.findChanges(since);
     }
 
     @Override
     @Transactional
     public void add(AddCarRequest carRequest) {
-        Brand brand = addBrand(carRequest.getBrand());
-        CarModel model = addModel(carRequest.getModel());
+        Brand brand = carDictionary.acquireBrand(carRequest.getBrand());
+        CarModel model = carDictionary.acquireModel(carRequest.getModel());
 
-        FuelType fuelType = fuelTypeRepository.findById(carRequest.getFuelType()).orElseThrow(() -> new RuntimeException("Error: Fuel type is not found."));
-        CarImage carImage = carImageRepository.findById(1L).orElseThrow(() -> new RuntimeException("Error: Car image is not found"));
+        FuelType fuelType = referenceData.findFuelType(carRequest.getFuelType()).orElseThrow(() -> new RuntimeException("Error: Fuel type is not found."));
+        CarImage carImage = carImageService.acquireDefault();
 
-        carRepository.save(new Car(
+        Car car = new Car(
                 brand,
                 model,
                 carRequest.getYear(),
@@ -70,35 +141,59 @@ public class CarServiceImpl implements CarService {
                 carRequest.getPrice(),
                 true,
                 carImage
-        ));
+        );
+
+        // The ID is assigned to the instance on save, the generator hands it out before the insert
+        carRepository.save(car);
+        eventPublisher.publishEvent(CarChangedEvent.of(car.getId()));
     }
 
+    // The upload is stored before the transaction starts, so no connection is held while it is streamed. The car
+    // then switches images and the previous one is released in one transaction. When that fails, the reference
+    // taken on the new image is given back.
     @Override
-    public void changeImage(Long carID, MultipartFile file) throws IOException {
-        Car car = carRepository.getCarById(carID);
-        Long imageID = car.getCarImage().getImageID();
-
-        CarImage carImage = carImageRepository.save(new CarImage(file.getBytes()));
-        car.setCarImage(carImage);
+    public void changeImage(Long carID, InputStream content) throws IOException {
+        CarImage image = carImageService.store(content);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Car car = carRepository.getCarById(carID);
+                CarImage previousImage = car.getCarImage();
+
+                car.setCarImage(image);
+                carRepository.save(car);
+
+                carImageService.release(previousImage);
+                eventPublisher.publishEvent(CarChangedEvent.of(carID));
+            });
+        } catch (RuntimeException e) {
+            carImageService.release(image);
+            throw e;
+        }
+    }
 
-        deleteImage(imageID);
-        carRepository.save(car);
+    @Override
+    public CarImage getImage(Long carID) {
+        return carImageRepository.findByCarId(carID).orElseThrow(() -> new RuntimeException("Error: Car image is not found"));
     }
 
     @Override
     @Transactional
     public void delete(Car car) {
-        deleteModel(car.getModel());
-        deleteBrand(car.getBrand());
-        deleteImage(car.getCarImage().getImageID());
-
         carRepository.deleteById(car.getId());
+        carRepository.flush();
+
+        carDictionary.releaseModel(car.getModel());
+        carDictionary.releaseBrand(car.getBrand());
+        carImageService.release(car.getCarImage());
+        eventPublisher.publishEvent(CarChangedEvent.of(car.getId()));
     }
 
     @Override
     public void changeStatus(Car car) {
         car.setAvailable(!car.isAvailable());
         carRepository.save(car);
+        eventPublisher.publishEvent(CarChangedEvent.of(car.getId()));
     }
 
     @Override
@@ -106,22 +201,14 @@ public class CarServiceImpl implements CarService {
     public void update(Long carID, EditCarRequest carRequest) {
         Car car = carRepository.getCarById(carID);
 
-        if(!carRequest.getBrand().equals(car.getBrand().getName())){
-            Brand brand = car.getBrand();
-            car.setBrand(addBrand(carRequest.getBrand()));
-
-            if(!carRepository.existsByBrandName(brand.getName())){
-                brandRepository.deleteByName(brand.getName());
-            }
+        Brand previousBrand = car.getBrand();
+        if(!carRequest.getBrand().equals(previousBrand.getName())){
+            car.setBrand(carDictionary.acquireBrand(carRequest.getBrand()));
         }
 
-        if(!carRequest.getModel().equals(car.getModel().getName())){
-            CarModel carModel = car.getModel();
-            car.setModel(addModel(carRequest.getModel()));
-
-            if(!carRepository.existsByModelName(carModel.getName())){
-                carModelRepository.deleteByName(carModel.getName());
-            }
+        CarModel previousModel = car.getModel();
+        if(!carRequest.getModel().equals(previousModel.getName())){
+            car.setModel(carDictionary.acquireModel(carRequest.getModel()));
         }
 
         if(!carRequest.getCapacity().equals(car.getCapacity())){
@@ -145,29 +232,58 @@ public class CarServiceImpl implements CarService {
         }
 
         if(!carRequest.getFuelType().equals(car.getFuelType().getId())){
-            car.setFuelType(fuelTypeRepository.findById(carRequest.getFuelType())
+            car.setFuelType(referenceData.findFuelType(carRequest.getFuelType())
                     .orElseThrow(() -> new RuntimeException("Error: Fuel type is not found.")));
         }
 
         carRepository.save(car);
-    }
 
-    private void deleteImage(Long imageID){
-        // CarImage with ID = 1 is the default image for new cars. For this reason, it must be protected from deletion
-        if(imageID != 1) {
-            carImageRepository.deleteById(imageID);
+        // The car has to point at the new brand and model in the database before the previous ones can be removed
+        if(car.getBrand() != previousBrand || car.getModel() != previousModel){
+            carRepository.flush();
+        }
+
+        if(car.getBrand() != previousBrand){
+            carDictionary.releaseBrand(previousBrand);
         }
-    }
 
-    private void deleteModel(CarModel model){
-        if(carRepository.countByModelName(model.getName()) == 1){
-            carModelRepository.deleteById(model.getId());
+        if(car.getModel() != previousModel){
+            carDictionary.releaseModel(previousModel);
         }
+
+        eventPublisher.publishEvent(CarChangedEvent.of(carID));
     }
 
-    private void deleteBrand(Brand brand){
-        if(carRepository.countByBrandName(brand.getName()) == 1){
-            brandRepository.deleteById(brand.getId());
+    // The matching cars are locked first, then the rentals covering today. A car cannot be rented between the check
+    // and the UPDATE, and the UPDATE changes exactly the locked cars.
+    @Override
+    @Transactional
+    public int update(CarBulkUpdateRequest request) {
+        if(request.getFuelType() != null && referenceData.findFuelType(request.getFuelType()).isEmpty()){
+            throw new RuntimeException("Error: Fuel type is not found.");
+        }
+
+        if(request.getFilter().getIds() != null && request.getFilter().getIds().isEmpty()){
+            return 0;
+        }
+
+        List<Long> carIDs = carRepository.findLockedIds(request.getFilter());
+        if(carIDs.isEmpty()){
+            return 0;
+        }
+
+        // Cars with an accepted rental today cannot be withdrawn, the same rule as for a single car
+        if(Boolean.FALSE.equals(request.getAvailable())){
+            List<Long> rentedIDs = carRepository.findRentedIds(request.getFilter(),
+                    referenceData.getRentalStatus(RentalStatusEnum.STATUS_ACCEPTED), LocalDate.now());
+            if(!rentedIDs.isEmpty()){
+                throw new CarsRentedException(rentedIDs);
+            }
         }
+
+        int updated = carRepository.update(request);
+        eventPublisher.publishEvent(new CarChangedEvent(carIDs));
+
+        return updated;
     }
 }
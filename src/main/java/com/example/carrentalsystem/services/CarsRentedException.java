@@ -0,0 +1,16 @@
+package com.example.carrentalsystem.services;
+
+import lombok.Getter;
+
+import java.util.List;
+
+// Thrown when cars with an accepted rental today are withdrawn
+@Getter
+public class CarsRentedException extends RuntimeException {
+    private final List<Long> carIDs;
+
+    public CarsRentedException(List<Long> carIDs) {
+        super("Cars have active rentals: " + carIDs);
+        this.carIDs = carIDs;
+    }
+}
@@ -1,7 +1,7 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.FuelType;
-import com.example.carrentalsystem.repositories.FuelTypeRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -11,15 +11,15 @@ import java.util.Optional;
 @Service("fuelService")
 @RequiredArgsConstructor
 public class FuelServiceImpl implements FuelService{
-    private final FuelTypeRepository fuelTypeRepository;
+    private final ReferenceDataRegistry referenceData;
 
     @Override
     public List<FuelType> findAll() {
-        return fuelTypeRepository.findAll();
+        return referenceData.getFuelTypes();
     }
 
     @Override
     public Optional<FuelType> findById(Long fuelType) {
-        return fuelTypeRepository.findById(fuelType);
+        return referenceData.findFuelType(fuelType);
     }
 }
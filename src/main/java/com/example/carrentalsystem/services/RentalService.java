@@ -1,21 +1,26 @@
 package com.example.carrentalsystem.services;
 
-import com.example.carrentalsystem.models.Rental;
 import com.example.carrentalsystem.models.RentalStatusEnum;
 import com.example.carrentalsystem.payload.request.AddCarRentalRequest;
 import com.example.carrentalsystem.payload.request.EditCarRentalRequest;
+import com.example.carrentalsystem.payload.response.RentalResponse;
+import com.example.carrentalsystem.payload.response.RentalStatusChangeResponse;
+import com.example.carrentalsystem.payload.response.StatusHistoryResponse;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public interface RentalService {
     void changeStatus(Long statusID, Long rentalID);
 
-    List<Rental> findAll();
+    List<RentalStatusChangeResponse> changeStatuses(List<Long> rentalIDs, Long statusID);
 
-    List<Rental> findByUserId(Long userID);
+    List<RentalResponse> findAll();
+
+    List<RentalResponse> findByUserId(Long userID);
 
     boolean existsById(Long rentalID);
 
@@ -23,12 +28,18 @@ public interface RentalService {
 
     void delete(Long rentalID);
 
-    Rental findById(Long rentalID);
+    Optional<RentalResponse> findById(Long rentalID);
 
     void add(AddCarRentalRequest request);
 
     boolean existsDateAndStatus(LocalDate now, RentalStatusEnum rentalStatusEnum);
 
+    boolean isCarRented(Long carID);
+
     boolean existsByCarId(Long id);
 
+    void releaseByUserId(Long userID);
+
+    List<StatusHistoryResponse> findHistory(Long rentalID);
+
 }
@@ -1,17 +1,23 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ActiveRentalCache;
+import com.example.carrentalsystem.cache.CarAvailabilityIndex;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.*;
 import com.example.carrentalsystem.payload.request.AddCarRentalRequest;
 import com.example.carrentalsystem.payload.request.EditCarRentalRequest;
+import com.example.carrentalsystem.payload.response.RentalResponse;
+import com.example.carrentalsystem.payload.response.RentalStatusChangeResponse;
+import com.example.carrentalsystem.payload.response.StatusHistoryResponse;
 import com.example.carrentalsystem.repositories.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 @Service("rentalService")
 @RequiredArgsConstructor
@@ -20,27 +26,126 @@ public class RentalServiceImpl implements RentalService {
     private final StatusHistoryRepository statusHistoryRepository;
     private final UserRepository userRepository;
     private final CarRepository carRepository;
-    private final RentalStatusRepository rentalStatusRepository;
+    private final ReferenceDataRegistry referenceData;
+    private final CarAvailabilityIndex availabilityIndex;
+    private final ReservationSlotRepository reservationSlotRepository;
+    private final ActiveRentalCache activeRentalCache;
 
     @Override
+    @Transactional
     public void changeStatus(Long statusID, Long rentalID) {
-        Rental rental = rentalRepository.getReferenceById(rentalID);
-        RentalStatus rentalStatus = rentalStatusRepository.findById(statusID).orElseThrow(() -> new RuntimeException("Error: Rental status is not found"));
-        rental.setRentalStatus(rentalStatus);
+        Rental rental = rentalRepository.findLockedById(rentalID).orElseThrow(() -> new RuntimeException("Error: Rental is not found"));
+        RentalStatus rentalStatus = referenceData.findRentalStatus(statusID).orElseThrow(() -> new RuntimeException("Error: Rental status is not found"));
+        RentalStatusEnum previousStatus = rental.getRentalStatus().getName();
+        if(!previousStatus.canChangeTo(rentalStatus.getName())){
+            throw new RentalStatusTransitionException(previousStatus, rentalStatus.getName());
+        }
+
+        boolean wasBlocking = CarAvailabilityIndex.isBlocking(previousStatus);
+        boolean blocking = CarAvailabilityIndex.isBlocking(rentalStatus.getName());
 
-        StatusHistory newStatus = new StatusHistory(rentalStatus, LocalDate.now());
-        rental.getStatusHistory().add(addHistory(newStatus));
+        // A rejected rental that is accepted again has to get its days back first
+        if(blocking && !wasBlocking){
+            reserve(rental.getCar().getId(), rentalID, rental.getStartDate(), rental.getEndDate());
+        } else if(!blocking && wasBlocking){
+            reservationSlotRepository.release(rentalID);
+        }
+
+        if(previousStatus == RentalStatusEnum.STATUS_ACCEPTED || rentalStatus.getName() == RentalStatusEnum.STATUS_ACCEPTED){
+            activeRentalCache.evict(rental.getCar().getId());
+        }
+
+        rental.setRentalStatus(rentalStatus);
         rentalRepository.save(rental);
+        statusHistoryRepository.save(new StatusHistory(rental, rentalStatus, LocalDate.now()));
+
+        if(blocking){
+            availabilityIndex.put(rental.getCar().getId(), rentalID, rental.getStartDate(), rental.getEndDate());
+        } else {
+            availabilityIndex.remove(rentalID);
+        }
     }
 
+    // The rentals are checked and locked with one read, moved with one UPDATE and their history written as one batch
     @Override
-    public List<Rental> findAll() {
-        return rentalRepository.findAll();
+    @Transactional
+    public List<RentalStatusChangeResponse> changeStatuses(List<Long> rentalIDs, Long statusID) {
+        RentalStatus rentalStatus = referenceData.findRentalStatus(statusID).orElseThrow(() -> new RuntimeException("Error: Rental status is not found"));
+        boolean blocking = CarAvailabilityIndex.isBlocking(rentalStatus.getName());
+
+        Map<Long, RentalState> states = new HashMap<>();
+        for (RentalState state : rentalRepository.findStatesByIdIn(rentalIDs)) {
+            states.put(state.getId(), state);
+        }
+
+        Map<Long, RentalStatusChangeResponse.Result> results = new LinkedHashMap<>();
+        // Previous status of every changed rental
+        Map<Long, RentalStatusEnum> changes = new LinkedHashMap<>();
+        for (Long rentalID : rentalIDs) {
+            if(results.containsKey(rentalID)){
+                continue;
+            }
+
+            RentalState state = states.get(rentalID);
+            if(state == null){
+                results.put(rentalID, RentalStatusChangeResponse.Result.NOT_FOUND);
+                continue;
+            }
+
+            RentalStatusEnum previousStatus = referenceData.findRentalStatus(state.getStatusId()).orElseThrow().getName();
+            if(!previousStatus.canChangeTo(rentalStatus.getName())){
+                results.put(rentalID, RentalStatusChangeResponse.Result.NOT_ALLOWED);
+            } else if(blocking && !CarAvailabilityIndex.isBlocking(previousStatus) && !tryReserve(state)){
+                results.put(rentalID, RentalStatusChangeResponse.Result.CONFLICT);
+            } else {
+                results.put(rentalID, RentalStatusChangeResponse.Result.CHANGED);
+                changes.put(rentalID, previousStatus);
+            }
+        }
+
+        if(!changes.isEmpty()){
+            List<Long> changedIDs = List.copyOf(changes.keySet());
+            List<Long> releasedIDs = changes.entrySet().stream()
+                    .filter(change -> !blocking && CarAvailabilityIndex.isBlocking(change.getValue()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            if(!releasedIDs.isEmpty()){
+                reservationSlotRepository.release(releasedIDs);
+            }
+
+            rentalRepository.updateStatusByIdIn(rentalStatus, changedIDs);
+            statusHistoryRepository.saveAll(changedIDs.stream()
+                    .map(rentalID -> new StatusHistory(rentalRepository.getReferenceById(rentalID), rentalStatus, LocalDate.now()))
+                    .toList());
+
+            changes.forEach((rentalID, previousStatus) -> {
+                RentalState state = states.get(rentalID);
+                if(blocking){
+                    availabilityIndex.put(state.getCarId(), state.getId(), state.getStartDate(), state.getEndDate());
+                } else {
+                    availabilityIndex.remove(state.getId());
+                }
+
+                if(previousStatus == RentalStatusEnum.STATUS_ACCEPTED || rentalStatus.getName() == RentalStatusEnum.STATUS_ACCEPTED){
+                    activeRentalCache.evict(state.getCarId());
+                }
+            });
+        }
+
+        List<RentalStatusChangeResponse> responses = new ArrayList<>();
+        results.forEach((rentalID, result) -> responses.add(new RentalStatusChangeResponse(rentalID, result)));
+        return responses;
     }
 
     @Override
-    public List<Rental> findByUserId(Long userID) {
-        return userRepository.getReferenceById(userID).getRentals();
+    public List<RentalResponse> findAll() {
+        return rentalRepository.findAllResponses();
+    }
+
+    @Override
+    public List<RentalResponse> findByUserId(Long userID) {
+        return rentalRepository.findResponsesByUserId(userID);
     }
 
     @Override
@@ -49,43 +154,70 @@ public class RentalServiceImpl implements RentalService {
     }
 
     @Override
+    @Transactional
     public void update(Long rentalID, EditCarRentalRequest request) {
         Rental rental = rentalRepository.getReferenceById(rentalID);
+        if(CarAvailabilityIndex.isBlocking(rental.getRentalStatus().getName())){
+            reservationSlotRepository.release(rentalID);
+            reserve(rental.getCar().getId(), rentalID, request.getStartDate(), request.getEndDate());
+        }
+
+        if(rental.getRentalStatus().getName() == RentalStatusEnum.STATUS_ACCEPTED){
+            activeRentalCache.evict(rental.getCar().getId());
+        }
+
         rental.setPrice((ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate())+1) * rental.getCar().getPrice());
         rental.setStartDate(request.getStartDate());
         rental.setEndDate(request.getEndDate());
         rentalRepository.save(rental);
+
+        if(CarAvailabilityIndex.isBlocking(rental.getRentalStatus().getName())){
+            availabilityIndex.put(rental.getCar().getId(), rentalID, rental.getStartDate(), rental.getEndDate());
+        }
     }
 
     @Override
+    @Transactional
     public void delete(Long rentalID) {
-        deleteHistory(rentalID);
+        Rental rental = rentalRepository.getReferenceById(rentalID);
+        if(rental.getRentalStatus().getName() == RentalStatusEnum.STATUS_ACCEPTED){
+            activeRentalCache.evict(rental.getCar().getId());
+        }
+
+        statusHistoryRepository.deleteByRentalId(rentalID);
         rentalRepository.deleteById(rentalID);
+        reservationSlotRepository.release(rentalID);
+        availabilityIndex.remove(rentalID);
     }
 
     @Override
-    public Rental findById(Long rentalID) {
-        return rentalRepository.getReferenceById(rentalID);
+    public Optional<RentalResponse> findById(Long rentalID) {
+        return rentalRepository.findResponseById(rentalID);
     }
 
     @Override
+    @Transactional
     public void add(AddCarRentalRequest request) {
         Car car = carRepository.getReferenceById(request.getCarID());
-        StatusHistory statusHistory = new StatusHistory(rentalStatusRepository.findByName(RentalStatusEnum.STATUS_PENDING), request.getAddDate());
-
+        RentalStatus pending = referenceData.getRentalStatus(RentalStatusEnum.STATUS_PENDING);
+        // Only a reference, the user and their rentals are not loaded
         User user = userRepository.getReferenceById(request.getUserID());
-        user.getRentals().add(
+
+        Rental rental = rentalRepository.save(
                 new Rental(
                         car,
+                        user,
                         request.getStartDate(),
                         request.getEndDate(),
                         request.getAddDate(),
                         (ChronoUnit.DAYS.between(request.getStartDate(), request.getEndDate())+1) * car.getPrice(),
-                        rentalStatusRepository.findByName(RentalStatusEnum.STATUS_PENDING),
-                        Collections.singletonList(addHistory(statusHistory))
+                        pending
                 )
         );
-        userRepository.save(user);
+        statusHistoryRepository.save(new StatusHistory(rental, pending, request.getAddDate()));
+        reserve(car.getId(), rental.getId(), rental.getStartDate(), rental.getEndDate());
+
+        availabilityIndex.put(car.getId(), rental.getId(), rental.getStartDate(), rental.getEndDate());
     }
 
     @Override
@@ -93,20 +225,56 @@ public class RentalServiceImpl implements RentalService {
         return rentalRepository.existsByRentalDateAndRentalStatus(date, status);
     }
 
+    @Override
+    public boolean isCarRented(Long carID) {
+        return activeRentalCache.isRented(carID);
+    }
+
     @Override
     public boolean existsByCarId(Long id) {
         return rentalRepository.existsByCarId(id);
     }
 
-    private void deleteHistory(Long rentalID) {
-        List<StatusHistory> historyList = new ArrayList<>(findById(rentalID).getStatusHistory());
+    // The rentals are removed together with their user, only the bookings and status history kept next to them are
+    // removed here
+    @Override
+    @Transactional
+    public void releaseByUserId(Long userID) {
+        List<RentalPeriod> periods = rentalRepository.findPeriodsByUserId(userID);
+        if(periods.isEmpty()){
+            return;
+        }
+
+        statusHistoryRepository.deleteByRentalIdIn(periods.stream().map(RentalPeriod::getId).toList());
+        for (RentalPeriod period : periods) {
+            reservationSlotRepository.release(period.getId());
+            availabilityIndex.remove(period.getId());
+            activeRentalCache.evict(period.getCarId());
+        }
+    }
+
+    @Override
+    public List<StatusHistoryResponse> findHistory(Long rentalID) {
+        return statusHistoryRepository.findResponsesByRentalId(rentalID);
+    }
 
-        for (StatusHistory item : historyList) {
-            statusHistoryRepository.deleteById(item.getId());
+    // The unique key of the slots rejects days taken by a concurrent booking, the rollback removes everything written before
+    private void reserve(Long carID, Long rentalID, LocalDate startDate, LocalDate endDate) {
+        try {
+            reservationSlotRepository.reserve(carID, rentalID, startDate, endDate);
+        } catch (DuplicateKeyException e) {
+            throw new ReservationConflictException(carID, reservationSlotRepository.findBookedDays(carID, rentalID, startDate, endDate));
         }
     }
 
-    private StatusHistory addHistory(StatusHistory status) {
-        return statusHistoryRepository.save(status);
+    // A duplicate key only fails its own statement, the days already written for the rental are removed again
+    private boolean tryReserve(RentalState state) {
+        try {
+            reservationSlotRepository.reserve(state.getCarId(), state.getId(), state.getStartDate(), state.getEndDate());
+            return true;
+        } catch (DuplicateKeyException e) {
+            reservationSlotRepository.release(state.getId());
+            return false;
+        }
     }
 }
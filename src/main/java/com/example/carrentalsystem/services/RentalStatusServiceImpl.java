@@ -1,8 +1,8 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.RentalStatus;
 import com.example.carrentalsystem.models.RentalStatusEnum;
-import com.example.carrentalsystem.repositories.RentalStatusRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -12,25 +12,25 @@ import java.util.Optional;
 @Service("rentalStatusService")
 @RequiredArgsConstructor
 public class RentalStatusServiceImpl implements RentalStatusService{
-    private final RentalStatusRepository rentalStatusRepository;
+    private final ReferenceDataRegistry referenceData;
 
     @Override
     public List<RentalStatus> findAll() {
-        return rentalStatusRepository.findAll();
+        return referenceData.getRentalStatuses();
     }
 
     @Override
     public boolean existsById(Long statusID) {
-        return rentalStatusRepository.existsById(statusID);
+        return referenceData.findRentalStatus(statusID).isPresent();
     }
 
     @Override
     public RentalStatus findByName(RentalStatusEnum rentalStatusEnum) {
-        return rentalStatusRepository.findByName(rentalStatusEnum);
+        return referenceData.getRentalStatus(rentalStatusEnum);
     }
 
     @Override
     public Optional<RentalStatus> findById(Long rentalStatus) {
-        return rentalStatusRepository.findById(rentalStatus);
+        return referenceData.findRentalStatus(rentalStatus);
     }
 }
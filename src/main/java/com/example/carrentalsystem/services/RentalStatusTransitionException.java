@@ -0,0 +1,10 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.models.RentalStatusEnum;
+
+// Thrown when a rental is moved to a status it cannot reach from its current one
+public class RentalStatusTransitionException extends RuntimeException {
+    public RentalStatusTransitionException(RentalStatusEnum from, RentalStatusEnum to) {
+        super("Rental status cannot be changed from " + from + " to " + to);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.carrentalsystem.services;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Thrown when a rental asks for days on which its car is already booked
+@Getter
+public class ReservationConflictException extends RuntimeException {
+    private final Long carID;
+    private final List<LocalDate> bookedDays;
+
+    public ReservationConflictException(Long carID, List<LocalDate> bookedDays) {
+        super(bookedDays.isEmpty()
+                ? "Car is already booked for the selected dates"
+                : "Car is already booked on " + bookedDays.stream().map(LocalDate::toString).collect(Collectors.joining(", ")));
+        this.carID = carID;
+        this.bookedDays = bookedDays;
+    }
+}
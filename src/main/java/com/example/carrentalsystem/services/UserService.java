@@ -6,6 +6,7 @@ import com.example.carrentalsystem.payload.request.AddUserRequest;
 import com.example.carrentalsystem.payload.request.LoginRequest;
 import com.example.carrentalsystem.payload.request.SignupRequest;
 import com.example.carrentalsystem.payload.response.LoginResponse;
+import com.example.carrentalsystem.payload.response.UserResponse;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -26,7 +27,7 @@ public interface UserService {
 
     User getUserById(Long userID);
 
-    List<User> findAll();
+    List<UserResponse> findAll();
 
     void delete(Long userID);
 
@@ -1,5 +1,6 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.Role;
 import com.example.carrentalsystem.models.RoleEnum;
 import com.example.carrentalsystem.models.User;
@@ -7,7 +8,7 @@ import com.example.carrentalsystem.payload.request.AddUserRequest;
 import com.example.carrentalsystem.payload.request.LoginRequest;
 import com.example.carrentalsystem.payload.request.SignupRequest;
 import com.example.carrentalsystem.payload.response.LoginResponse;
-import com.example.carrentalsystem.repositories.RoleRepository;
+import com.example.carrentalsystem.payload.response.UserResponse;
 import com.example.carrentalsystem.repositories.UserRepository;
 import com.example.carrentalsystem.security.jwt.JWTUtils;
 import com.example.carrentalsystem.security.services.UserDetailsImpl;
@@ -30,8 +31,9 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final JWTUtils jwtUtils;
     private final AuthenticationManager authenticationManager;
-    private final RoleRepository roleRepository;
+    private final ReferenceDataRegistry referenceData;
     private final PasswordEncoder encoder;
+    private final RentalService rentalService;
 
     @Override
     public boolean existsByUsername(String username) {
@@ -83,6 +85,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public void changePassword(Long userID, String newPassword) {
         User user = userRepository.getReferenceById(userID);
         user.setPassword(encoder.encode(newPassword));
@@ -95,22 +98,25 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<User> findAll() {
-        return userRepository.findAll();
+    public List<UserResponse> findAll() {
+        return userRepository.findAllResponses();
     }
 
     @Override
     @Transactional
     public void delete(Long userID) {
+        rentalService.releaseByUserId(userID);
         userRepository.deleteById(userID);
     }
 
     @Override
+    @Transactional
     public boolean verifyUserPassword(Long userID, String currentPassword) {
         return encoder.matches(currentPassword, getUserById(userID).getPassword());
     }
 
     @Override
+    @Transactional
     public void changeRole(Long userID, String role) {
         User user = getUserById(userID);
         user.setRole(findRole(role));
@@ -120,12 +126,12 @@ public class UserServiceImpl implements UserService {
     @Override
     public Role findRole(String stringRole) {
         if(stringRole == null) {
-            return roleRepository.findByName(RoleEnum.ROLE_USER).orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+            return referenceData.getRole(RoleEnum.ROLE_USER);
         } else {
             if(stringRole.equals("admin")) {
-                return roleRepository.findByName(RoleEnum.ROLE_ADMIN).orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+                return referenceData.getRole(RoleEnum.ROLE_ADMIN);
             } else {
-                return roleRepository.findByName(RoleEnum.ROLE_USER).orElseThrow(() -> new RuntimeException("Error: Role is not found."));
+                return referenceData.getRole(RoleEnum.ROLE_USER);
             }
         }
     }
@@ -0,0 +1,128 @@
+package com.example.carrentalsystem.storage;
+
+import com.example.carrentalsystem.models.CarImage;
+import com.example.carrentalsystem.repositories.CarImageRepository;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.example.carrentalsystem.repositories.CatalogChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.Optional;
+
+// Moves image content stored as BLOBs in car_images to the image storage. Safe to run repeatedly, rows already moved are skipped.
+@Component
+public class CarImageMigration {
+    private static final Logger logger = LoggerFactory.getLogger(CarImageMigration.class);
+
+    // Before the image storage was introduced, the image with ID = 1 was the default image for new cars
+    private static final long LEGACY_DEFAULT_IMAGE_ID = 1L;
+
+    private final CarImageRepository carImageRepository;
+    private final CarRepository carRepository;
+    private final ImageStorage imageStorage;
+    private final ImageRenditionGenerator renditionGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogChangeRepository catalogChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public CarImageMigration(CarImageRepository carImageRepository, CarRepository carRepository, ImageStorage imageStorage,
+                             ImageRenditionGenerator renditionGenerator, JdbcTemplate jdbcTemplate, CatalogChangeRepository catalogChangeRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.carImageRepository = carImageRepository;
+        this.carRepository = carRepository;
+        this.imageStorage = imageStorage;
+        this.renditionGenerator = renditionGenerator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogChangeRepository = catalogChangeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Returns whether cars were moved to another image. The migration runs on startup, before the event listeners are
+    // registered, so the change is recorded for the other nodes directly and the caller reloads its own car catalog.
+    public boolean migrate() {
+        allowEmptyFileContent();
+
+        List<Long> imageIDs = carImageRepository.findIdsWithFileContent();
+        if(imageIDs.isEmpty()){
+            return false;
+        }
+
+        logger.info("Moving {} car images from the database to the image storage", imageIDs.size());
+        boolean carsChanged = false;
+        for (Long imageID : imageIDs) {
+            carsChanged |= Boolean.TRUE.equals(transactionTemplate.execute(status -> migrate(imageID)));
+        }
+
+        return carsChanged;
+    }
+
+    // Returns whether cars were moved to another image
+    private boolean migrate(Long imageID) {
+        CarImage carImage = carImageRepository.findById(imageID).orElseThrow(() -> new RuntimeException("Error: Car image is not found"));
+        byte[] content = carImage.getFileContent();
+        boolean defaultImage = imageID == LEGACY_DEFAULT_IMAGE_ID && !carImageRepository.existsByDefaultImageTrue();
+
+        String contentHash;
+        try {
+            contentHash = imageStorage.store(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Long> carIDs = carRepository.findIdsByCarImage(carImage);
+
+        // Duplicates of an image that has already been moved are merged into it
+        Optional<CarImage> duplicate = carImageRepository.findByContentHash(contentHash);
+        if(duplicate.isPresent()){
+            CarImage target = duplicate.get();
+            carRepository.replaceImage(carImage, target);
+            carImageRepository.addReferences(target.getImageID(), carIDs.size());
+            target.setDefaultImage(target.isDefaultImage() || defaultImage);
+            carImageRepository.delete(carImage);
+
+            // The bulk update bypasses the entities, the catalog still shows the old image ID of these cars
+            if(!carIDs.isEmpty()){
+                catalogChangeRepository.record(carIDs);
+            }
+            return !carIDs.isEmpty();
+        }
+
+        carImage.setContentHash(contentHash);
+        carImage.setContentLength(content.length);
+        carImage.setContentType(guessContentType(content));
+        carImage.setReferenceCount(carIDs.size());
+        carImage.setDefaultImage(carImage.isDefaultImage() || defaultImage);
+        carImage.setFileContent(null);
+        renditionGenerator.submit(contentHash);
+        return false;
+    }
+
+    // The column used to be NOT NULL, and schema update does not change existing columns
+    private void allowEmptyFileContent() {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "select is_nullable from information_schema.columns where table_schema = database() and table_name = 'car_images' and column_name = 'file_content'",
+                String.class);
+
+        if(nullable.contains("NO")){
+            jdbcTemplate.execute("alter table car_images modify file_content blob null");
+        }
+    }
+
+    private static String guessContentType(byte[] content) {
+        try {
+            String contentType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(content));
+            return contentType == null ? "application/octet-stream" : contentType;
+        } catch (IOException e) {
+            return "application/octet-stream";
+        }
+    }
+}
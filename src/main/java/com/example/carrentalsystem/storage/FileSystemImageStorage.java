@@ -0,0 +1,166 @@
+package com.example.carrentalsystem.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Component
+public class FileSystemImageStorage implements ImageStorage {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path root;
+    private final long maxImageSize;
+
+    public FileSystemImageStorage(@Value("${crs.app.images.directory}") String directory,
+                                  @Value("${crs.app.images.maxUploadSize}") DataSize maxImageSize) {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.maxImageSize = maxImageSize.toBytes();
+    }
+
+    @Override
+    public String store(byte[] content) throws IOException {
+        String contentHash = sha256(content);
+        write(path(contentHash), content);
+        return contentHash;
+    }
+
+    @Override
+    public StoredImage store(InputStream content) throws IOException {
+        // Uploads are written inside the storage directory, so the final move stays on the same file system
+        Path incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+        Path temp = Files.createTempFile(incoming, "upload", ".tmp");
+
+        try {
+            MessageDigest digest = sha256();
+            ImageFormat format;
+            long length;
+
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                byte[] header = content.readNBytes(ImageFormat.HEADER_LENGTH);
+                format = ImageFormat.detect(header).orElseThrow(UnsupportedImageTypeException::new);
+                digest.update(header);
+                output.write(header);
+                length = header.length;
+
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    length += read;
+                    if(length > maxImageSize){
+                        throw new ImageTooLargeException(maxImageSize);
+                    }
+
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                }
+            }
+
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            moveIntoPlace(temp, path(contentHash));
+            return new StoredImage(contentHash, length, format.getContentType());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean exists(String contentHash) {
+        return Files.exists(path(contentHash));
+    }
+
+    @Override
+    public Resource load(String contentHash) {
+        return new FileSystemResource(path(contentHash));
+    }
+
+    @Override
+    public void storeRendition(String contentHash, ImageSize size, byte[] content) throws IOException {
+        write(renditionPath(contentHash, size), content);
+    }
+
+    @Override
+    public boolean hasRendition(String contentHash, ImageSize size) {
+        return Files.exists(renditionPath(contentHash, size));
+    }
+
+    @Override
+    public Resource loadRendition(String contentHash, ImageSize size) {
+        return new FileSystemResource(renditionPath(contentHash, size));
+    }
+
+    @Override
+    public void delete(String contentHash) throws IOException {
+        for (ImageSize size : ImageSize.values()) {
+            if(size != ImageSize.ORIGINAL){
+                Files.deleteIfExists(renditionPath(contentHash, size));
+            }
+        }
+
+        Files.deleteIfExists(path(contentHash));
+    }
+
+    // Written to a temporary file first, so a reader never sees a partially written image
+    private void write(Path target, byte[] content) throws IOException {
+        if(Files.exists(target)){
+            return;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        if(Files.exists(target)){
+            return;
+        }
+
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // The same content was stored concurrently
+        }
+    }
+
+    // Files are spread over subdirectories named after the first two characters of the hash
+    private Path path(String contentHash) {
+        if(!contentHash.matches("[0-9a-f]{64}")){
+            throw new IllegalArgumentException("Error: Invalid content hash.");
+        }
+
+        return root.resolve(contentHash.substring(0, 2)).resolve(contentHash);
+    }
+
+    private Path renditionPath(String contentHash, ImageSize size) {
+        return path(contentHash).resolveSibling(contentHash + "." + size.getName() + ".jpg");
+    }
+
+    static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.carrentalsystem.storage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class FileTransfer {
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileTransfer() {
+    }
+
+    // Sends the whole file as the response body. Headers must be set before calling this method.
+    public static void send(Path file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            response.setContentLengthLong(size);
+
+            // Tomcat writes the file with sendfile once the request has been processed
+            if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))){
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    // Sends the buffer as the response body. Headers must be set before calling this method.
+    public static void send(ByteBuffer content, HttpServletResponse response) throws IOException {
+        response.setContentLength(content.remaining());
+
+        // The channel copies the buffer in small chunks, a cached image is never copied into one heap array as a whole
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (content.hasRemaining()) {
+            out.write(content);
+        }
+    }
+}
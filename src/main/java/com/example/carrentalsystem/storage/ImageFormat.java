@@ -0,0 +1,58 @@
+package com.example.carrentalsystem.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+// Image formats accepted for upload, recognised by their leading bytes instead of the client supplied content type
+public enum ImageFormat {
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp");
+
+    // Number of leading bytes needed to recognise every format
+    public static final int HEADER_LENGTH = 12;
+
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String contentType;
+
+    ImageFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static Optional<ImageFormat> detect(byte[] header) {
+        if(startsWith(header, 0, JPEG_SIGNATURE)){
+            return Optional.of(JPEG);
+        }
+
+        if(startsWith(header, 0, PNG_SIGNATURE)){
+            return Optional.of(PNG);
+        }
+
+        if(startsWith(header, 0, ascii("GIF87a")) || startsWith(header, 0, ascii("GIF89a"))){
+            return Optional.of(GIF);
+        }
+
+        if(startsWith(header, 0, ascii("RIFF")) && startsWith(header, 8, ascii("WEBP"))){
+            return Optional.of(WEBP);
+        }
+
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] header, int offset, byte[] signature) {
+        return header.length >= offset + signature.length
+                && Arrays.equals(header, offset, offset + signature.length, signature, 0, signature.length);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.carrentalsystem.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class ImageRenditionGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(ImageRenditionGenerator.class);
+
+    private final ImageStorage imageStorage;
+    private final TaskExecutor executor;
+    private final long maxPixels;
+    // Images whose task was rejected by the full queue, submitted again by retryRejected
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+    public ImageRenditionGenerator(ImageStorage imageStorage, @Qualifier("imageRenditionExecutor") TaskExecutor executor,
+                                   @Value("${crs.app.images.maxRenditionPixels}") long maxPixels) {
+        this.imageStorage = imageStorage;
+        this.executor = executor;
+        this.maxPixels = maxPixels;
+    }
+
+    public void submit(String contentHash) {
+        try {
+            executor.execute(() -> generate(contentHash));
+        } catch (TaskRejectedException e) {
+            logger.warn("Image rendition queue is full, image {} is retried later", contentHash);
+            rejected.add(contentHash);
+        }
+    }
+
+    // The original image is served until then. Stops at the first rejection, the queue is still full.
+    @Scheduled(fixedDelayString = "${crs.app.images.renditionRetryInterval}", initialDelayString = "${crs.app.images.renditionRetryInterval}")
+    public void retryRejected() {
+        for (Iterator<String> iterator = rejected.iterator(); iterator.hasNext(); ) {
+            String contentHash = iterator.next();
+            try {
+                executor.execute(() -> generate(contentHash));
+            } catch (TaskRejectedException e) {
+                return;
+            }
+
+            iterator.remove();
+        }
+    }
+
+    void generate(String contentHash) {
+        BufferedImage original;
+        try (InputStream input = imageStorage.load(contentHash).getInputStream()) {
+            original = read(contentHash, input);
+        } catch (IOException e) {
+            logger.warn("Cannot read image {}: {}", contentHash, e.getMessage());
+            return;
+        }
+
+        if(original == null){
+            return;
+        }
+
+        // Renditions are created from the largest to the smallest, each one scaled down from the previous
+        BufferedImage source = toRgb(original);
+        for (ImageSize size : new ImageSize[]{ImageSize.FULL, ImageSize.DETAIL, ImageSize.THUMBNAIL}) {
+            source = scale(source, size.getMaxDimension());
+
+            if(!imageStorage.hasRendition(contentHash, size)){
+                try {
+                    imageStorage.storeRendition(contentHash, size, encode(source, size.getQuality()));
+                } catch (IOException e) {
+                    logger.warn("Cannot store {} rendition of image {}: {}", size.getName(), contentHash, e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    // The dimensions are read from the image header first, a small file can decode to a huge bitmap. Returns null for
+    // images that are not decoded.
+    private BufferedImage read(String contentHash, InputStream input) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if(readers == null || !readers.hasNext()){
+                logger.warn("Image {} has an unsupported format, no renditions created", contentHash);
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if(pixels > maxPixels){
+                    logger.warn("Image {} has {} pixels, more than {}, no renditions created", contentHash, pixels, maxPixels);
+                    return null;
+                }
+
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // JPEG has no alpha channel, transparent areas become white
+    private static BufferedImage toRgb(BufferedImage image) {
+        if(image.getType() == BufferedImage.TYPE_INT_RGB){
+            return image;
+        }
+
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        graphics.dispose();
+        return rgb;
+    }
+
+    // Halving the size in steps keeps bilinear scaling sharp for large reductions
+    private static BufferedImage scale(BufferedImage image, int maxDimension) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage result = image;
+        while (width != targetWidth || height != targetHeight) {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(result, 0, 0, width, height, null);
+            graphics.dispose();
+            result = step;
+        }
+
+        return result;
+    }
+
+    private static byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return output.toByteArray();
+    }
+}
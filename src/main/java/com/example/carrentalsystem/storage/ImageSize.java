@@ -0,0 +1,39 @@
+package com.example.carrentalsystem.storage;
+
+public enum ImageSize {
+    THUMBNAIL(320, 0.7f),
+    DETAIL(1024, 0.8f),
+    FULL(2048, 0.88f),
+    ORIGINAL(0, 0f);
+
+    // Longest edge of the rendition in pixels and its JPEG quality
+    private final int maxDimension;
+    private final float quality;
+
+    ImageSize(int maxDimension, float quality) {
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    public static ImageSize fromName(String name) {
+        for (ImageSize size : values()) {
+            if(size.getName().equals(name)){
+                return size;
+            }
+        }
+
+        throw new IllegalArgumentException("Error: Unknown image size.");
+    }
+}
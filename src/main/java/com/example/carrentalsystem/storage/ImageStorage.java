@@ -0,0 +1,29 @@
+package com.example.carrentalsystem.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ImageStorage {
+    // Stores the content under its SHA-256 hash and returns the hash. Storing the same content twice keeps a single copy.
+    String store(byte[] content) throws IOException;
+
+    // Streams an uploaded image to the storage without buffering it in memory. The content must start with the
+    // signature of an ImageFormat and must not exceed the maximum image size.
+    StoredImage store(InputStream content) throws IOException;
+
+    boolean exists(String contentHash);
+
+    Resource load(String contentHash);
+
+    // Renditions are JPEG copies of the image resized to one of the ImageSize dimensions, stored beside the original
+    void storeRendition(String contentHash, ImageSize size, byte[] content) throws IOException;
+
+    boolean hasRendition(String contentHash, ImageSize size);
+
+    Resource loadRendition(String contentHash, ImageSize size);
+
+    // Removes the image together with its renditions
+    void delete(String contentHash) throws IOException;
+}
@@ -0,0 +1,7 @@
+package com.example.carrentalsystem.storage;
+
+public class ImageTooLargeException extends RuntimeException {
+    public ImageTooLargeException(long maxImageSize) {
+        super("Error: Image is larger than " + maxImageSize + " bytes.");
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.carrentalsystem.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class StoredImage {
+    private String contentHash;
+
+    private long contentLength;
+
+    private String contentType;
+}
@@ -0,0 +1,7 @@
+package com.example.carrentalsystem.storage;
+
+public class UnsupportedImageTypeException extends RuntimeException {
+    public UnsupportedImageTypeException() {
+        super("Error: Unsupported image type.");
+    }
+}
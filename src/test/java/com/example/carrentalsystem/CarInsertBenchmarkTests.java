@@ -0,0 +1,116 @@
+package com.example.carrentalsystem;
+
+import com.example.carrentalsystem.cache.CarDictionary;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
+import com.example.carrentalsystem.models.*;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.example.carrentalsystem.repositories.IdGeneratorRepository;
+import com.example.carrentalsystem.services.CarImageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Compares inserting cars one statement per row, the way IDENTITY IDs forced Hibernate to work, with batched inserts
+// using pooled IDs. Needs the configured database and is skipped unless enabled:
+// mvn test -Dtest=CarInsertBenchmarkTests -Dcrs.benchmark=true [-Dcrs.benchmark.cars=10000]
+// Both runs are rolled back, only the reserved IDs are used up.
+@SpringBootTest
+@EnabledIfSystemProperty(named = "crs.benchmark", matches = "true")
+class CarInsertBenchmarkTests {
+	private static final Logger logger = LoggerFactory.getLogger(CarInsertBenchmarkTests.class);
+
+	@Autowired
+	private CarRepository carRepository;
+
+	@Autowired
+	private CarDictionary carDictionary;
+
+	@Autowired
+	private CarImageService carImageService;
+
+	@Autowired
+	private ReferenceDataRegistry referenceData;
+
+	@Autowired
+	private IdGeneratorRepository idGeneratorRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void compareInsertThroughput() {
+		int cars = Integer.getInteger("crs.benchmark.cars", 5000);
+
+		// Warm up connections and statement caches before measuring
+		rowByRow(Math.min(cars, 500));
+		batched(Math.min(cars, 500));
+
+		double before = rowByRow(cars);
+		double after = batched(cars);
+
+		logger.info("Inserted {} cars: {} cars/s one row per statement, {} cars/s batched ({}x)",
+				cars, Math.round(before), Math.round(after), String.format("%.1f", after / before));
+	}
+
+	private double rowByRow(int cars) {
+		return measure(cars, (brand, model, fuelType, image) -> {
+			long id = idGeneratorRepository.allocate("cars", cars);
+
+			for (int i = 0; i < cars; i++) {
+				jdbcTemplate.update("insert into cars (id, brand_id, model_id, year, mileage, fuel_type_id, horse_power, capacity, price, available, car_image_image_id) "
+								+ "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+						id + i, brand.getId(), model.getId(), 2020, 1000 + i, fuelType.getId(), 150, "1.6", 100, true, image.getImageID());
+			}
+		});
+	}
+
+	private double batched(int cars) {
+		return measure(cars, (brand, model, fuelType, image) -> {
+			List<Car> batch = new ArrayList<>(cars);
+			for (int i = 0; i < cars; i++) {
+				batch.add(new Car(brand, model, 2020, 1000 + i, fuelType, 150, "1.6", 100, true, image));
+			}
+
+			carRepository.saveAll(batch);
+			carRepository.flush();
+		});
+	}
+
+	private double measure(int cars, Insert insert) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		return transactionTemplate.execute(status -> {
+			Brand brand = carDictionary.acquireBrand("Benchmark", cars);
+			CarModel model = carDictionary.acquireModel("Benchmark", cars);
+			FuelType fuelType = referenceData.getFuelType(FuelTypeEnum.FUEL_DIESEL);
+			CarImage image = carImageService.acquireDefault(cars);
+			long before = carRepository.count();
+
+			long start = System.nanoTime();
+			insert.run(brand, model, fuelType, image);
+			long elapsed = System.nanoTime() - start;
+
+			assertEquals(before + cars, carRepository.count());
+			status.setRollbackOnly();
+			return cars / (elapsed / 1_000_000_000.0);
+		});
+	}
+
+	private interface Insert {
+		void run(Brand brand, CarModel model, FuelType fuelType, CarImage image);
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.carrentalsystem;
+
+import com.example.carrentalsystem.models.Car;
+import com.example.carrentalsystem.payload.request.EditCarRequest;
+import com.example.carrentalsystem.repositories.CarImageRepository;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.example.carrentalsystem.services.CarService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Time and heap allocation of loading every car and car image, and of flushing a car update while many cars
+// are managed. Run it with and without bytecode enhancement and compare the logged numbers:
+// mvn test -Dtest=EntityLoadBenchmarkTests -Dcrs.benchmark=true
+// mvn clean test -Dtest=EntityLoadBenchmarkTests -Dcrs.benchmark=true -DskipEnhance
+// Needs the configured database with some cars in it. Updates are rolled back.
+@SpringBootTest
+@EnabledIfSystemProperty(named = "crs.benchmark", matches = "true")
+class EntityLoadBenchmarkTests {
+	private static final Logger logger = LoggerFactory.getLogger(EntityLoadBenchmarkTests.class);
+	private static final int ROUNDS = 10;
+
+	@Autowired
+	private CarRepository carRepository;
+
+	@Autowired
+	private CarImageRepository carImageRepository;
+
+	@Autowired
+	private CarService carService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void loadAllCarsAndImages() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setReadOnly(true);
+
+		measure("findAll cars and images", () -> transactionTemplate.executeWithoutResult(status -> {
+			carRepository.findAll();
+			carImageRepository.findAll();
+		}));
+	}
+
+	@Test
+	void flushCarUpdate() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		measure("update one car with all cars managed", () -> transactionTemplate.executeWithoutResult(status -> {
+			List<Car> cars = carRepository.findAll();
+			Car car = cars.get(0);
+
+			// Only the price differs, so the flush has to find one dirty field among all managed cars
+			carService.update(car.getId(), new EditCarRequest(car.getHorsePower(), car.getPrice() + 1, car.getYear(), car.getMileage(),
+					car.getBrand().getName(), car.getModel().getName(), car.getCapacity(), car.getFuelType().getId()));
+			carRepository.flush();
+			status.setRollbackOnly();
+		}));
+	}
+
+	private void measure(String name, Runnable run) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		run.run();
+
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			run.run();
+		}
+
+		logger.info("{}: {} ms, {} KB allocated per round", name, (System.nanoTime() - start) / 1_000_000 / ROUNDS,
+				(threads.getCurrentThreadAllocatedBytes() - allocated) / 1024 / ROUNDS);
+	}
+}
@@ -0,0 +1,125 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.payload.request.CarCursor;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.repositories.CarRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CarCatalogTests {
+    private CarRepository carRepository;
+    private InMemoryCatalogChangeRepository changeLog;
+    private CarCatalog catalog;
+
+    @BeforeEach
+    void setUp(){
+        carRepository = mock(CarRepository.class);
+        changeLog = new InMemoryCatalogChangeRepository();
+        catalog = new CarCatalog(carRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+    }
+
+    //void onCarChanged(CarChangedEvent event);
+    //Test when committed changes replace, add and remove cars in the catalog snapshot
+    @Test
+    public void shouldRefreshCatalogWithChangedCars() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 200), summary(3L, 300)));
+        catalog.load();
+
+        CarSummaryResponse withdrawn = summary(2L, 200);
+        withdrawn.setAvailable(false);
+        when(carRepository.findSummariesByIdIn(List.of(2L, 3L, 4L))).thenReturn(List.of(withdrawn, summary(4L, 50)));
+
+        changeLog.commit(catalog, new CarChangedEvent(List.of(2L, 3L, 4L)));
+
+        assertEquals(List.of(4L, 1L), availableIds(CarCursor.first(CarCursor.SORT_PRICE)));
+        assertFalse(catalog.getSnapshot().findById(2L).get().isAvailable());
+        assertTrue(catalog.getSnapshot().findById(3L).isEmpty());
+    }
+
+    //void onCarChanged(CarChangedEvent event);
+    //Test when changed cars are merged into the price order between unchanged cars of the same price
+    @Test
+    public void shouldMergeChangedCarsIntoPriceOrder() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 300), summary(3L, 200), summary(5L, 200)));
+        catalog.load();
+
+        when(carRepository.findSummariesByIdIn(List.of(2L, 4L))).thenReturn(List.of(summary(2L, 150), summary(4L, 200)));
+
+        changeLog.commit(catalog, new CarChangedEvent(List.of(2L, 4L)));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), availableIds(CarCursor.first(CarCursor.SORT_PRICE)));
+        assertEquals(List.of(4L, 5L), availableIds(new CarCursor(CarCursor.SORT_PRICE, 3L, 200)));
+    }
+
+    //void onCarChanged(CarChangedEvent event);
+    //Test when more cars changed than are refreshed one by one and the whole catalog is read again
+    @Test
+    public void shouldReloadCatalogWhenManyCarsChanged() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100)), List.of(summary(2L, 200)));
+        catalog.load();
+        long version = catalog.getVersion();
+
+        changeLog.commit(catalog, new CarChangedEvent(LongStream.rangeClosed(1, 1001).boxed().toList()));
+
+        verify(carRepository, never()).findSummariesByIdIn(anyList());
+        assertEquals(List.of(2L), availableIds(CarCursor.first(CarCursor.SORT_ID)));
+        assertEquals(version + 1, catalog.getVersion());
+    }
+
+    //void refresh();
+    //Test when cars changed on another node and the catalog catches up from the shared change log
+    @Test
+    public void shouldApplyChangesRecordedByAnotherNode() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 200)));
+        catalog.load();
+
+        CarRepository otherRepository = mock(CarRepository.class);
+        CarCatalog otherNode = new CarCatalog(otherRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+        when(otherRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 200)));
+        otherNode.load();
+        changeLog.commit(otherNode, CarChangedEvent.of(2L));
+        changeLog.commit(otherNode, CarChangedEvent.of(1L));
+
+        when(carRepository.findSummariesByIdIn(List.of(1L, 2L))).thenReturn(List.of(summary(2L, 250)));
+        catalog.refresh();
+
+        assertEquals(otherNode.getVersion(), catalog.getVersion());
+        assertEquals(List.of(2L), availableIds(CarCursor.first(CarCursor.SORT_ID)));
+        assertEquals(250, catalog.getSnapshot().findById(2L).get().getPrice());
+        assertEquals(List.of(1L), catalog.findChanges(otherNode.getVersion() - 1).getDeleted());
+    }
+
+    //void refresh();
+    //Test when the changes after the version of the catalog were purged from the change log and the whole catalog is read again
+    @Test
+    public void shouldReloadCatalogWhenChangesWerePurged() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100)), List.of(summary(2L, 200)));
+        catalog.load();
+        changeLog.record(List.of(1L));
+        changeLog.record(List.of(2L));
+        changeLog.purge(1);
+
+        catalog.refresh();
+
+        verify(carRepository, never()).findSummariesByIdIn(anyList());
+        assertEquals(List.of(2L), availableIds(CarCursor.first(CarCursor.SORT_ID)));
+        assertEquals(2, catalog.getVersion());
+        assertTrue(catalog.findChanges(0).isResyncRequired());
+    }
+
+    private List<Long> availableIds(CarCursor cursor) {
+        return catalog.getSnapshot().findAvailableAfter(cursor, 5, id -> true).stream().map(CarSummaryResponse::getId).toList();
+    }
+
+    private static CarSummaryResponse summary(Long id, Integer price) {
+        return new CarSummaryResponse(id, "Audi", "Avant", 2020, 1000, FuelTypeEnum.FUEL_DIESEL, 150, "2.0", price, true, null);
+    }
+}
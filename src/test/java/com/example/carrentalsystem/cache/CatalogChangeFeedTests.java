@@ -0,0 +1,90 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.CatalogChangesResponse;
+import com.example.carrentalsystem.repositories.CarRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CatalogChangeFeedTests {
+
+    //Optional<Changes> since(long since);
+    //Test when the same car changed several times since the version and is returned once, latest change first
+    @Test
+    public void shouldReturnEveryChangedCarOnce() {
+        CatalogChangeFeed changeFeed = new CatalogChangeFeed(10);
+        long version = changeFeed.getVersion();
+
+        changeFeed.record(version + 1, List.of(1L, 2L));
+        changeFeed.record(version + 2, List.of(3L, 1L));
+
+        CatalogChangeFeed.Changes changes = changeFeed.since(version).get();
+        assertEquals(version + 2, changes.version());
+        assertEquals(List.of(1L, 3L, 2L), List.copyOf(changes.carIDs()));
+        assertEquals(Set.of(3L, 1L), changeFeed.since(version + 1).get().carIDs());
+        assertTrue(changeFeed.since(version + 2).get().carIDs().isEmpty());
+    }
+
+    //Optional<Changes> since(long since);
+    //Test when the whole catalog was replaced and clients of older or unknown versions have to resync
+    @Test
+    public void shouldRequireResyncAfterReset() {
+        CatalogChangeFeed changeFeed = new CatalogChangeFeed(10);
+        long version = changeFeed.getVersion();
+        changeFeed.record(version + 1, List.of(1L));
+
+        changeFeed.reset(version + 3);
+
+        assertTrue(changeFeed.since(version).isEmpty());
+        assertTrue(changeFeed.since(version + 1).isEmpty());
+        assertTrue(changeFeed.since(changeFeed.getVersion()).isPresent());
+        assertTrue(changeFeed.since(changeFeed.getVersion() + 1).isEmpty());
+    }
+
+    //CatalogChangesResponse findChanges(long since);
+    //Test when a client gets the changed and deleted cars since its version, and has to resync once the feed moved on
+    @Test
+    public void shouldReturnCatalogChangesSinceVersion() {
+        CarRepository carRepository = mock(CarRepository.class);
+        InMemoryCatalogChangeRepository changeLog = new InMemoryCatalogChangeRepository();
+        CarCatalog catalog = new CarCatalog(carRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 200)));
+        catalog.load();
+        long version = catalog.findChanges(0).getVersion();
+
+        when(carRepository.findSummariesByIdIn(List.of(2L))).thenReturn(List.of(summary(2L, 250)));
+        changeLog.commit(catalog, CarChangedEvent.of(2L));
+        changeLog.commit(catalog, CarChangedEvent.of(1L));
+
+        CatalogChangesResponse changes = catalog.findChanges(version);
+        assertFalse(changes.isResyncRequired());
+        assertEquals(version + 2, changes.getVersion());
+        assertEquals(List.of(250), changes.getCars().stream().map(CarSummaryResponse::getPrice).toList());
+        assertEquals(List.of(1L), changes.getDeleted());
+
+        assertTrue(catalog.findChanges(changes.getVersion()).getCars().isEmpty());
+        assertTrue(catalog.findChanges(changes.getVersion() + 1).isResyncRequired());
+
+        // The feed holds three entries, the change to car 2 is overwritten
+        when(carRepository.findSummariesByIdIn(List.of(3L, 4L))).thenReturn(List.of(summary(3L, 300), summary(4L, 400)));
+        changeLog.commit(catalog, new CarChangedEvent(List.of(3L, 4L)));
+
+        assertTrue(catalog.findChanges(version).isResyncRequired());
+
+        CatalogChangesResponse latest = catalog.findChanges(version + 1);
+        assertEquals(List.of(4L, 3L), latest.getCars().stream().map(CarSummaryResponse::getId).toList());
+        assertEquals(List.of(1L), latest.getDeleted());
+    }
+
+    private static CarSummaryResponse summary(Long id, Integer price) {
+        return new CarSummaryResponse(id, "Audi", "Avant", 2020, 1000, FuelTypeEnum.FUEL_DIESEL, 150, "2.0", price, true, null);
+    }
+}
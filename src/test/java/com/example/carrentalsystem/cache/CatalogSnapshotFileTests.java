@@ -0,0 +1,122 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.example.carrentalsystem.repositories.RentalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CatalogSnapshotFileTests {
+    @TempDir
+    private Path directory;
+
+    private CarRepository restartedRepository;
+    private RentalRepository restartedRentalRepository;
+    private InMemoryCatalogChangeRepository changeLog;
+    private CarCatalog restartedCatalog;
+    private CarAvailabilityIndex restartedIndex;
+    private TaskScheduler taskScheduler;
+
+    @BeforeEach
+    void setUp(){
+        CarRepository carRepository = mock(CarRepository.class);
+        changeLog = new InMemoryCatalogChangeRepository();
+        CarCatalog catalog = new CarCatalog(carRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+        CarAvailabilityIndex availabilityIndex = new CarAvailabilityIndex(mock(RentalRepository.class));
+
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100), summary(2L, 200)));
+        catalog.load();
+        availabilityIndex.put(1L, 10L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 10));
+        new CatalogSnapshotFile(catalog, availabilityIndex, mock(TaskScheduler.class), file()).save();
+
+        restartedRepository = mock(CarRepository.class);
+        restartedRentalRepository = mock(RentalRepository.class);
+        restartedCatalog = new CarCatalog(restartedRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+        restartedIndex = new CarAvailabilityIndex(restartedRentalRepository);
+        taskScheduler = mock(TaskScheduler.class);
+    }
+
+    //Optional<Instant> restore();
+    //Test when a restarted node serves the catalog and bookings saved to the snapshot file before touching the database
+    @Test
+    public void shouldServeCatalogRestoredFromSnapshotFile() {
+        assertTrue(new CatalogSnapshotFile(restartedCatalog, restartedIndex, taskScheduler, file()).restore().isPresent());
+
+        List<CarSummaryResponse> cars = restartedCatalog.getSnapshot().findAvailable();
+        assertEquals(List.of(1L, 2L), cars.stream().map(CarSummaryResponse::getId).toList());
+        assertEquals("Avant", cars.get(0).getModel());
+        assertFalse(restartedIndex.isFree(1L, LocalDate.of(2024, 5, 5), LocalDate.of(2024, 5, 7)));
+        assertTrue(restartedIndex.isFree(2L, LocalDate.of(2024, 5, 5), LocalDate.of(2024, 5, 7)));
+        verifyNoInteractions(restartedRepository, restartedRentalRepository);
+    }
+
+    //void afterPropertiesSet();
+    //Test when the restored catalog is reconciled with the database in the background
+    @Test
+    public void shouldScheduleReconciliationAfterRestore() {
+        new CatalogSnapshotFile(restartedCatalog, restartedIndex, taskScheduler, file()).afterPropertiesSet();
+
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+        verifyNoInteractions(restartedRepository, restartedRentalRepository);
+    }
+
+    //void afterPropertiesSet();
+    //Test when cars changed on another node after the snapshot was saved and only those cars are read by the reconciliation
+    @Test
+    public void shouldApplyChangesRecordedAfterSnapshot() {
+        changeLog.record(List.of(2L));
+        when(restartedRepository.findSummariesByIdIn(List.of(2L))).thenReturn(List.of(summary(2L, 250)));
+
+        new CatalogSnapshotFile(restartedCatalog, restartedIndex, taskScheduler, file()).afterPropertiesSet();
+        ArgumentCaptor<Runnable> reconciliation = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(reconciliation.capture(), any(Instant.class));
+        reconciliation.getValue().run();
+
+        assertEquals(250, restartedCatalog.getSnapshot().findById(2L).get().getPrice());
+        assertEquals(changeLog.findVersion(), restartedCatalog.getVersion());
+        assertEquals(List.of(2L), restartedCatalog.findChanges(changeLog.findVersion() - 1).getCars().stream().map(CarSummaryResponse::getId).toList());
+        verify(restartedRepository, never()).findAllSummaries();
+    }
+
+    //void afterPropertiesSet();
+    //Test when the snapshot file is damaged and the catalog is loaded from the database
+    @Test
+    public void shouldLoadFromDatabaseWhenSnapshotIsDamaged() throws IOException {
+        byte[] content = Files.readAllBytes(file());
+        content[content.length - 1] ^= 1;
+        Files.write(file(), content);
+
+        when(restartedRepository.findAllSummaries()).thenReturn(List.of(summary(3L, 300)));
+
+        CatalogSnapshotFile snapshotFile = new CatalogSnapshotFile(restartedCatalog, restartedIndex, taskScheduler, file());
+        assertTrue(snapshotFile.restore().isEmpty());
+        snapshotFile.afterPropertiesSet();
+
+        assertEquals(List.of(3L), restartedCatalog.getSnapshot().findAvailable().stream().map(CarSummaryResponse::getId).toList());
+        verify(restartedRentalRepository, times(1)).findPeriodsByRentalStatusNameIn(CarAvailabilityIndex.BLOCKING_STATUSES);
+        verifyNoInteractions(taskScheduler);
+    }
+
+    private Path file() {
+        return directory.resolve("state/catalog.snapshot");
+    }
+
+    private static CarSummaryResponse summary(Long id, Integer price) {
+        return new CarSummaryResponse(id, "Audi", "Avant", 2020, 1000, FuelTypeEnum.FUEL_DIESEL, 150, "2.0", price, true, null);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.storage.ImageSize;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageByteCacheTests {
+    private ImageByteCache imageCache;
+
+    @BeforeEach
+    void setUp(){
+        imageCache = new ImageByteCache(DataSize.ofBytes(100), DataSize.ofBytes(40));
+    }
+
+    //ByteBuffer get(String key, Resource resource) throws IOException;
+    //Test when the bytes are loaded once and later served from the cache
+    @Test
+    public void shouldServeCachedBytesAfterFirstLoad() throws IOException {
+        ByteArrayResource content = new ByteArrayResource("image".getBytes());
+
+        ByteBuffer loaded = imageCache.get("hash", content);
+        ByteBuffer cached = imageCache.get("hash", new ByteArrayResource("other".getBytes()));
+
+        assertEquals(ByteBuffer.wrap("image".getBytes()), loaded);
+        assertEquals(ByteBuffer.wrap("image".getBytes()), cached);
+        assertTrue(cached.isReadOnly());
+        assertEquals(1, imageCache.getStatistics().getHits());
+        assertEquals(1, imageCache.getStatistics().getMisses());
+    }
+
+    //ByteBuffer get(String key, Resource resource) throws IOException;
+    //Test when the cache is full and the least recently used image is evicted
+    @Test
+    public void shouldEvictLeastRecentlyUsedImage() throws IOException {
+        imageCache.get("first", new ByteArrayResource(new byte[40]));
+        imageCache.get("second", new ByteArrayResource(new byte[40]));
+        imageCache.get("first", new ByteArrayResource(new byte[40]));
+
+        imageCache.get("third", new ByteArrayResource(new byte[40]));
+
+        assertEquals(1, imageCache.getStatistics().getEvictions());
+        assertEquals(80, imageCache.getStatistics().getUsedBytes());
+
+        imageCache.get("first", new ByteArrayResource(new byte[40]));
+        assertEquals(2, imageCache.getStatistics().getHits());
+    }
+
+    //ByteBuffer get(String key, Resource resource) throws IOException;
+    //Test when the image is larger than the maximum entry size
+    @Test
+    public void shouldNotCacheTooLargeImage() throws IOException {
+        assertNull(imageCache.get("large", new ByteArrayResource(new byte[41])));
+
+        assertEquals(0, imageCache.getStatistics().getEntries());
+        assertEquals(0, imageCache.getStatistics().getUsedBytes());
+    }
+
+    //void invalidate(String contentHash);
+    //Test when every size of a deleted image is removed from the cache
+    @Test
+    public void shouldEvictDeletedImageFromCache() throws IOException {
+        ByteArrayResource content = new ByteArrayResource("previousImage".getBytes());
+        imageCache.get(ImageByteCache.key("previousHash", ImageSize.ORIGINAL), content);
+        imageCache.get(ImageByteCache.key("previousHash", ImageSize.THUMBNAIL), content);
+        imageCache.get(ImageByteCache.key("otherHash", ImageSize.ORIGINAL), content);
+
+        imageCache.invalidate("previousHash");
+
+        assertEquals(1, imageCache.getStatistics().getEntries());
+        assertEquals(content.contentLength(), imageCache.getStatistics().getUsedBytes());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.CatalogChange;
+import com.example.carrentalsystem.repositories.CatalogChangeRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+// The catalog_changes table shared by the catalogs of a test, kept in a list
+class InMemoryCatalogChangeRepository extends CatalogChangeRepository {
+    private final List<CatalogChange> changes = new ArrayList<>();
+    private long version;
+
+    InMemoryCatalogChangeRepository() {
+        super(null, mock(PlatformTransactionManager.class), Duration.ZERO);
+    }
+
+    // Records the change and applies it to the catalog, like the listeners of CarChangedEvent around a commit
+    void commit(CarCatalog catalog, CarChangedEvent event) {
+        catalog.recordChange(event);
+        catalog.onCarChanged(event);
+    }
+
+    void purge(long untilVersion) {
+        changes.removeIf(change -> change.getVersion() <= untilVersion);
+    }
+
+    @Override
+    public synchronized long record(Collection<Long> carIDs) {
+        version++;
+        carIDs.stream().distinct().sorted().forEach(carID -> changes.add(new CatalogChange(version, carID, LocalDateTime.now())));
+        return version;
+    }
+
+    @Override
+    public synchronized long findVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized List<CatalogChange> findSince(long since, int limit) {
+        return changes.stream().filter(change -> change.getVersion() > since).limit(limit).toList();
+    }
+}
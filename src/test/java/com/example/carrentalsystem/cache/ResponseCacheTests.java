@@ -0,0 +1,82 @@
+package com.example.carrentalsystem.cache;
+
+import com.example.carrentalsystem.models.FuelTypeEnum;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.repositories.CarRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ResponseCacheTests {
+    private CarRepository carRepository;
+    private InMemoryCatalogChangeRepository changeLog;
+    private CarCatalog catalog;
+
+    @BeforeEach
+    void setUp(){
+        carRepository = mock(CarRepository.class);
+        changeLog = new InMemoryCatalogChangeRepository();
+        catalog = new CarCatalog(carRepository, changeLog, mock(PlatformTransactionManager.class), 3);
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(1L, 100)));
+        catalog.load();
+    }
+
+    //SerializedJson get(String key, Supplier<Object> value);
+    //Test when a serialized catalog page is reused until a car change moves the catalog version
+    @Test
+    public void shouldReuseCachedResponseUntilCarChanges() throws IOException {
+        ResponseCache responseCache = new ResponseCache(catalog, new ObjectMapper(), 10);
+
+        SerializedJson first = responseCache.get("available", () -> catalog.getSnapshot().findAvailable());
+        assertSame(first, responseCache.get("available", () -> fail("The cached response has to be used")));
+
+        when(carRepository.findSummariesByIdIn(List.of(1L))).thenReturn(List.of(summary(1L, 150)));
+        changeLog.commit(catalog, CarChangedEvent.of(1L));
+
+        SerializedJson changed = responseCache.get("available", () -> catalog.getSnapshot().findAvailable());
+        assertNotEquals(first.getETag(), changed.getETag());
+        assertTrue(new String(changed.getBody()).contains("\"price\":150"));
+        assertArrayEquals(changed.getBody(), new GZIPInputStream(new ByteArrayInputStream(changed.getGzipBody())).readAllBytes());
+    }
+
+    //Optional<SerializedJson> find(String key, Supplier<Optional<?>> value);
+    //Test when a value that is not found is built again on the next request
+    @Test
+    public void shouldNotCacheMissingValue() {
+        ResponseCache responseCache = new ResponseCache(catalog, new ObjectMapper(), 10);
+
+        assertTrue(responseCache.find("car-2", () -> catalog.getSnapshot().findById(2L)).isEmpty());
+
+        Optional<SerializedJson> found = responseCache.find("car-2", () -> Optional.of(summary(2L, 200)));
+        assertTrue(found.isPresent());
+        assertSame(found.get(), responseCache.find("car-2", () -> fail("The cached response has to be used")).get());
+    }
+
+    //SerializedJson get(String key, Supplier<Object> value);
+    //Test when the cache is full and is emptied before the next response is added
+    @Test
+    public void shouldClearFullCache() {
+        ResponseCache responseCache = new ResponseCache(catalog, new ObjectMapper(), 2);
+        SerializedJson first = responseCache.get("first", () -> List.of(1));
+        responseCache.get("second", () -> List.of(2));
+
+        SerializedJson third = responseCache.get("third", () -> List.of(3));
+
+        assertSame(third, responseCache.get("third", () -> fail("The cached response has to be used")));
+        assertNotSame(first, responseCache.get("first", () -> List.of(1)));
+    }
+
+    private static CarSummaryResponse summary(Long id, Integer price) {
+        return new CarSummaryResponse(id, "Audi", "Avant", 2020, 1000, FuelTypeEnum.FUEL_DIESEL, 150, "2.0", price, true, null);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.carrentalsystem.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonResponsesTests {
+    //static boolean acceptsGzip(String acceptEncoding);
+    //Test when gzip is listed with or without a weight
+    @Test
+    public void shouldAcceptListedGzip() {
+        assertTrue(JsonResponses.acceptsGzip("gzip, deflate, br"));
+        assertTrue(JsonResponses.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(JsonResponses.acceptsGzip("x-gzip"));
+        assertTrue(JsonResponses.acceptsGzip("*"));
+    }
+
+    //static boolean acceptsGzip(String acceptEncoding);
+    //Test when gzip is refused or not listed
+    @Test
+    public void shouldNotAcceptRefusedGzip() {
+        assertFalse(JsonResponses.acceptsGzip(null));
+        assertFalse(JsonResponses.acceptsGzip("gzip;q=0"));
+        assertFalse(JsonResponses.acceptsGzip("gzip; q=0.000, *"));
+        assertFalse(JsonResponses.acceptsGzip("*;q=0"));
+        assertFalse(JsonResponses.acceptsGzip("identity, br"));
+        assertFalse(JsonResponses.acceptsGzip("gzip;q=high"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.carrentalsystem.repositories;
+
+import com.example.carrentalsystem.models.RentalStatus;
+import com.example.carrentalsystem.models.RentalStatusEnum;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarFilter;
+import com.example.carrentalsystem.payload.request.CarSearchRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// The criteria API is mocked, the tests check which predicates a request adds and how it is paged
+public class CarSearchRepositoryTests {
+    private CarSearchRepositoryImpl carSearchRepository;
+    private EntityManager entityManager;
+    private CriteriaBuilder cb;
+
+    @BeforeEach
+    void setUp(){
+        entityManager = mock(EntityManager.class, RETURNS_DEEP_STUBS);
+        cb = entityManager.getCriteriaBuilder();
+        carSearchRepository = new CarSearchRepositoryImpl();
+        ReflectionTestUtils.setField(carSearchRepository, "entityManager", entityManager);
+    }
+
+    //List<CarSummaryResponse> search(CarSearchRequest request);
+    //Test when no criteria are given
+    @Test
+    public void shouldOnlySelectAvailableCarsWithoutCriteria() {
+        carSearchRepository.search(new CarSearchRequest());
+
+        verify(cb, times(1)).isTrue(any());
+        verify(cb, never()).equal(any(), any(Object.class));
+        verify(cb, never()).greaterThanOrEqualTo(any(Expression.class), any(Integer.class));
+        verify(cb, never()).lessThanOrEqualTo(any(Expression.class), any(Integer.class));
+        verify(cb, times(2)).asc(any());
+
+        TypedQuery<?> query = entityManager.createQuery(any(CriteriaQuery.class));
+        verify(query).setFirstResult(0);
+        verify(query.setFirstResult(0)).setMaxResults(20);
+    }
+
+    //List<CarSummaryResponse> search(CarSearchRequest request);
+    //Test when names, fuel type, capacity and ranges are combined
+    @Test
+    public void shouldCombineEveryGivenCriterion() {
+        CarSearchRequest request = new CarSearchRequest();
+        request.setBrand("BMW");
+        request.setModel("X5");
+        request.setFuelType(2L);
+        request.setCapacity("5");
+        request.setMinPrice(100);
+        request.setMaxPrice(300);
+        request.setMinYear(2015);
+        request.setSort("price");
+        request.setDirection("desc");
+
+        carSearchRepository.search(request);
+
+        verify(cb).equal(any(), eq("BMW"));
+        verify(cb).equal(any(), eq("X5"));
+        verify(cb).equal(any(), eq(2L));
+        verify(cb).equal(any(), eq("5"));
+        verify(cb).greaterThanOrEqualTo(any(Expression.class), eq(100));
+        verify(cb).lessThanOrEqualTo(any(Expression.class), eq(300));
+        verify(cb).greaterThanOrEqualTo(any(Expression.class), eq(2015));
+        verify(cb, times(2)).greaterThanOrEqualTo(any(Expression.class), any(Integer.class));
+        verify(cb, times(1)).lessThanOrEqualTo(any(Expression.class), any(Integer.class));
+        verify(cb, times(2)).desc(any());
+    }
+
+    //List<CarSummaryResponse> search(CarSearchRequest request);
+    //Test when a later page is requested
+    @Test
+    public void shouldSkipPreviousPages() {
+        CarSearchRequest request = new CarSearchRequest();
+        request.setPage(3);
+        request.setSize(25);
+
+        carSearchRepository.search(request);
+
+        verify(entityManager.createQuery(any(CriteriaQuery.class))).setFirstResult(75);
+    }
+
+    //List<CarSummaryResponse> search(CarSearchRequest request);
+    //Test when the offset of the page does not fit in an int
+    @Test
+    public void shouldRejectPageWithOverflowingOffset() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        CarSearchRequest request = new CarSearchRequest();
+        request.setSize(CarSearchRequest.MAX_SIZE);
+
+        request.setPage(CarSearchRequest.MAX_PAGE);
+        assertTrue(validator.validate(request).isEmpty());
+        carSearchRepository.search(request);
+
+        request.setPage(CarSearchRequest.MAX_PAGE + 1);
+        assertFalse(validator.validate(request).isEmpty());
+        assertThrows(ArithmeticException.class, () -> carSearchRepository.search(request));
+    }
+
+    //List<Long> findLockedIds(CarFilter filter);
+    //Test when brand, model, IDs and years are combined
+    @Test
+    public void shouldFilterByEveryGivenCriterion() {
+        CarFilter filter = new CarFilter("BMW", "X5", 2015, 2020, List.of(1L, 2L));
+
+        carSearchRepository.findLockedIds(filter);
+
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        verify(query, times(2)).subquery(Long.class);
+        verify(cb).equal(any(), eq("BMW"));
+        verify(cb).equal(any(), eq("X5"));
+        verify(cb).greaterThanOrEqualTo(any(Expression.class), eq(2015));
+        verify(cb).lessThanOrEqualTo(any(Expression.class), eq(2020));
+    }
+
+    //List<Long> findLockedIds(CarFilter filter);
+    //Test when no criteria are given, every car matches
+    @Test
+    public void shouldMatchEveryCarWithoutCriteria() {
+        carSearchRepository.findLockedIds(new CarFilter());
+
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        verify(query, never()).subquery(any());
+        verify(cb, never()).equal(any(), any(Object.class));
+        verify(cb, never()).greaterThanOrEqualTo(any(Expression.class), any(Integer.class));
+    }
+
+    //List<Long> findLockedIds(CarFilter filter);
+    //Test when the matching cars are locked until the transaction ends
+    @Test
+    public void shouldLockMatchingCars() {
+        carSearchRepository.findLockedIds(new CarFilter());
+
+        verify(entityManager.createQuery(any(CriteriaQuery.class))).setLockMode(LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    //List<Long> findRentedIds(CarFilter filter, RentalStatus status, LocalDate day);
+    //Test when every rental covering the day is locked and only the cars of rentals in the given status are returned
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLockRentalsAndReturnCarsInStatus() {
+        RentalStatus accepted = new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED);
+        accepted.setId(2L);
+        List<Tuple> rows = List.of(row(3L, 1L), row(3L, 2L), row(5L, 1L), row(7L, 2L), row(7L, 2L));
+        TypedQuery<Tuple> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(any(CriteriaQuery.class))).thenReturn(query);
+        when(query.setLockMode(LockModeType.PESSIMISTIC_WRITE)).thenReturn(query);
+        when(query.getResultList()).thenReturn(rows);
+
+        assertEquals(List.of(3L, 7L), carSearchRepository.findRentedIds(new CarFilter(), accepted, LocalDate.of(2024, 5, 1)));
+
+        verify(query).setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        verify(cb).lessThanOrEqualTo(any(Expression.class), eq(LocalDate.of(2024, 5, 1)));
+        verify(cb).greaterThanOrEqualTo(any(Expression.class), eq(LocalDate.of(2024, 5, 1)));
+    }
+
+    //int update(CarBulkUpdateRequest request);
+    //Test when a percentage price change adds half a unit and floors, so the new price is rounded and not truncated
+    @Test
+    public void shouldRoundPercentagePriceChange() {
+        carSearchRepository.update(new CarBulkUpdateRequest(new CarFilter(), null, -15, null, null));
+
+        verify(cb).prod(any(Expression.class), eq(85));
+        verify(cb).sum(any(Expression.class), eq(50));
+        verify(cb).quot(any(Expression.class), eq(100));
+        verify(cb).function(eq("floor"), eq(Number.class), any(Expression.class));
+    }
+
+    private static Tuple row(Long carID, Long statusID) {
+        Tuple row = mock(Tuple.class);
+        when(row.get(0, Long.class)).thenReturn(carID);
+        when(row.get(1, Long.class)).thenReturn(statusID);
+        return row;
+    }
+}
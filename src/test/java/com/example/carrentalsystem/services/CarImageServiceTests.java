@@ -0,0 +1,75 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.cache.ImageByteCache;
+import com.example.carrentalsystem.models.CarImage;
+import com.example.carrentalsystem.repositories.CarImageRepository;
+import com.example.carrentalsystem.storage.ImageRenditionGenerator;
+import com.example.carrentalsystem.storage.ImageStorage;
+import com.example.carrentalsystem.storage.StoredImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CarImageServiceTests {
+    private CarImageService carImageService;
+    private CarImageRepository carImageRepository;
+    private ImageStorage imageStorage;
+    private ImageRenditionGenerator renditionGenerator;
+
+    @BeforeEach
+    void setUp(){
+        carImageRepository = mock(CarImageRepository.class);
+        imageStorage = mock(ImageStorage.class);
+        renditionGenerator = mock(ImageRenditionGenerator.class);
+        ImageByteCache imageCache = new ImageByteCache(DataSize.ofKilobytes(1), DataSize.ofBytes(100));
+        carImageService = new CarImageServiceImpl(carImageRepository, imageStorage, renditionGenerator, imageCache, mock(PlatformTransactionManager.class));
+    }
+
+    //CarImage storeDefault(InputStream content) throws IOException;
+    //Test when an image that is already stored becomes the default image
+    @Test
+    public void shouldMarkExistingImageAsDefault() throws IOException {
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+        CarImage storedImage = new CarImage("image/jpeg", "sameHash", 7, 2, false);
+        storedImage.setImageID(4L);
+
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("sameHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("sameHash")).thenReturn(Optional.of(storedImage));
+
+        CarImage carImage = carImageService.storeDefault(content);
+
+        verify(carImageRepository, times(1)).markDefault(4L);
+        verify(carImageRepository, times(1)).addReferences(4L, 0);
+        verify(carImageRepository, never()).saveAndFlush(any(CarImage.class));
+        assertTrue(carImage.isDefaultImage());
+    }
+
+    //CarImage store(InputStream content) throws IOException;
+    //Test when a concurrent upload of the same content inserted the row first
+    @Test
+    public void shouldReuseImageInsertedByConcurrentUpload() throws IOException {
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+        CarImage concurrentImage = new CarImage("image/jpeg", "sameHash", 7, 1, false);
+        concurrentImage.setImageID(5L);
+
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("sameHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("sameHash")).thenReturn(Optional.empty(), Optional.of(concurrentImage));
+        when(carImageRepository.saveAndFlush(any(CarImage.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+        CarImage carImage = carImageService.store(content);
+
+        assertEquals(concurrentImage, carImage);
+        verify(carImageRepository, times(1)).addReferences(5L, 1);
+        verify(carImageRepository, never()).markDefault(anyLong());
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.carrentalsystem.services;
+
+import com.example.carrentalsystem.cache.CarDictionary;
+import com.example.carrentalsystem.cache.NameSuggestIndex;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
+import com.example.carrentalsystem.models.*;
+import com.example.carrentalsystem.payload.response.CarImportResponse;
+import com.example.carrentalsystem.repositories.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CarImportServiceTests {
+    private BrandRepository brandRepository;
+    private CarModelRepository carModelRepository;
+    private CarImageRepository carImageRepository;
+    private JdbcTemplate jdbcTemplate;
+    private CarImportService carImportService;
+
+    @BeforeEach
+    void setUp(){
+        brandRepository = mock(BrandRepository.class);
+        carModelRepository = mock(CarModelRepository.class);
+        carImageRepository = mock(CarImageRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        ReferenceDataRegistry referenceData = mock(ReferenceDataRegistry.class);
+        CarDictionary carDictionary = new CarDictionary(brandRepository, carModelRepository, mock(CarRepository.class), new NameSuggestIndex());
+        CarImageService carImageService = new CarImageServiceImpl(carImageRepository, null, null, null, mock(PlatformTransactionManager.class));
+
+        CarImage defaultImage = new CarImage(4L, new byte[0]);
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(defaultImage));
+        when(brandRepository.findByName("Audi")).thenReturn(new Brand(1L, "Audi"));
+        when(carModelRepository.findByName("Avant")).thenReturn(new CarModel(2L, "Avant"));
+        when(brandRepository.addCars(eq(1L), anyInt())).thenReturn(1);
+        when(brandRepository.getReferenceById(1L)).thenReturn(new Brand(1L, "Audi"));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(new FuelType(FuelTypeEnum.FUEL_GASOLINE)));
+
+        IdGeneratorRepository idGeneratorRepository = mock(IdGeneratorRepository.class);
+        when(idGeneratorRepository.allocate(eq("cars"), anyInt())).thenReturn(100L);
+
+        carImportService = new CarImportServiceImpl(carDictionary, referenceData, carImageService, idGeneratorRepository, jdbcTemplate, mock(ApplicationEventPublisher.class),
+                mock(PlatformTransactionManager.class), new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 2);
+    }
+
+    //CarImportResponse importCars(InputStream content, CarImportFormat format) throws IOException;
+    //Test when method writes valid CSV rows in batches and counts brands, models and images once per batch
+    @Test
+    public void shouldImportCsvInBatches() throws IOException {
+        String csv = """
+                brand,model,year,mileage,fuelType,horsePower,capacity,price
+                Audi,Avant,2019,45000,1,150,"1,8",120
+                Audi,Avant,2020,30000,1,190,2.0,140
+                Audi,Avant,2021,10000,1,190,2.0,160
+                """;
+
+        CarImportResponse response = carImportService.importCars(stream(csv), CarImportFormat.CSV);
+
+        assertEquals(3, response.getImported());
+        assertEquals(0, response.getRejected());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), any(Collection.class), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        verify(brandRepository).addCars(1L, 2);
+        verify(brandRepository).addCars(1L, 1);
+        verify(carImageRepository).addReferences(4L, 2);
+        verify(carImageRepository).addReferences(4L, 1);
+    }
+
+    //CarImportResponse importCars(InputStream content, CarImportFormat format) throws IOException;
+    //Test when method reports invalid rows with their line numbers and imports the rest
+    @Test
+    public void shouldReportInvalidRows() throws IOException {
+        String ndjson = """
+                {"brand":"Audi","model":"Avant","year":2019,"mileage":45000,"fuelType":1,"horsePower":150,"capacity":"1.8","price":120}
+                {"brand":"Audi","model":"Avant","year":1950,"mileage":45000,"fuelType":1,"horsePower":150,"capacity":"1.8","price":120}
+
+                {"brand":"Audi","model":"Avant","year":2019,"mileage":45000,"fuelType":9,"horsePower":150,"capacity":"1.8","price":120}
+                not json
+                """;
+
+        CarImportResponse response = carImportService.importCars(stream(ndjson), CarImportFormat.NDJSON);
+
+        assertEquals(1, response.getImported());
+        assertEquals(3, response.getRejected());
+        assertEquals(List.of(2L, 4L, 5L), response.getErrors().stream().map(error -> error.getLine()).toList());
+        assertEquals("Error: Fuel type is not found.", response.getErrors().get(1).getMessage());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(Collection.class), eq(1), any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    //CarImportResponse importCars(InputStream content, CarImportFormat format) throws IOException;
+    //Test when a batch introduces a new brand, its row is written before the cars referencing it
+    @Test
+    public void shouldFlushNewBrandBeforeInsertingCars() throws IOException {
+        String csv = """
+                brand,model,year,mileage,fuelType,horsePower,capacity,price
+                Skoda,Avant,2019,45000,1,150,1.8,120
+                Skoda,Avant,2020,30000,1,190,2.0,140
+                """;
+        when(brandRepository.saveAndFlush(any(Brand.class))).thenAnswer(invocation -> {
+            Brand brand = invocation.getArgument(0);
+            brand.setId(7L);
+            return brand;
+        });
+
+        CarImportResponse response = carImportService.importCars(stream(csv), CarImportFormat.CSV);
+
+        assertEquals(2, response.getImported());
+        InOrder inOrder = inOrder(brandRepository, jdbcTemplate);
+        inOrder.verify(brandRepository).saveAndFlush(argThat(brand -> brand.getName().equals("Skoda") && brand.getCarCount() == 2));
+        inOrder.verify(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), eq(2), any(ParameterizedPreparedStatementSetter.class));
+        verify(brandRepository, never()).save(any(Brand.class));
+    }
+
+    private static InputStream stream(String content){
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,14 +1,37 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.CarAvailabilityIndex;
+import com.example.carrentalsystem.cache.CarCatalog;
+import com.example.carrentalsystem.cache.NameSuggestIndex;
+import com.example.carrentalsystem.cache.CarChangedEvent;
+import com.example.carrentalsystem.cache.CarDictionary;
+import com.example.carrentalsystem.cache.ImageByteCache;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.*;
 import com.example.carrentalsystem.payload.request.AddCarRequest;
+import com.example.carrentalsystem.payload.request.CarBulkUpdateRequest;
+import com.example.carrentalsystem.payload.request.CarFilter;
+import com.example.carrentalsystem.payload.request.CarCursor;
 import com.example.carrentalsystem.payload.request.EditCarRequest;
+import com.example.carrentalsystem.payload.response.CarPageResponse;
+import com.example.carrentalsystem.payload.response.CarSummaryResponse;
+import com.example.carrentalsystem.payload.response.NameSuggestion;
 import com.example.carrentalsystem.repositories.*;
+import com.example.carrentalsystem.storage.ImageRenditionGenerator;
+import com.example.carrentalsystem.storage.ImageStorage;
+import com.example.carrentalsystem.storage.ImageTooLargeException;
+import com.example.carrentalsystem.storage.StoredImage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,7 +42,14 @@ public class CarServiceTests {
     private BrandRepository brandRepository;
     private CarModelRepository carModelRepository;
     private CarImageRepository carImageRepository;
-    private FuelTypeRepository fuelTypeRepository;
+    private ImageStorage imageStorage;
+    private ImageRenditionGenerator renditionGenerator;
+    private ImageByteCache imageCache;
+    private ReferenceDataRegistry referenceData;
+    private CarAvailabilityIndex availabilityIndex;
+    private CarCatalog catalog;
+    private NameSuggestIndex suggestIndex;
+    private ApplicationEventPublisher eventPublisher;
     private CarService carService;
 
     @BeforeEach
@@ -28,52 +58,158 @@ public class CarServiceTests {
         brandRepository = mock(BrandRepository.class);
         carModelRepository = mock(CarModelRepository.class);
         carImageRepository = mock(CarImageRepository.class);
-        fuelTypeRepository = mock(FuelTypeRepository.class);
-        carService = new CarServiceImpl(carRepository, brandRepository, carModelRepository, carImageRepository, fuelTypeRepository);
+        imageStorage = mock(ImageStorage.class);
+        renditionGenerator = mock(ImageRenditionGenerator.class);
+        imageCache = new ImageByteCache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        referenceData = mock(ReferenceDataRegistry.class);
+        availabilityIndex = new CarAvailabilityIndex(mock(RentalRepository.class));
+        catalog = new CarCatalog(carRepository, mock(CatalogChangeRepository.class), mock(PlatformTransactionManager.class), 3);
+        suggestIndex = new NameSuggestIndex();
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        CarImageService carImageService = new CarImageServiceImpl(carImageRepository, imageStorage, renditionGenerator, imageCache, mock(PlatformTransactionManager.class));
+        CarDictionary carDictionary = new CarDictionary(brandRepository, carModelRepository, carRepository, suggestIndex);
+        carService = new CarServiceImpl(carRepository, carDictionary, carImageRepository, carImageService, referenceData, availabilityIndex, catalog, eventPublisher, mock(PlatformTransactionManager.class));
     }
 
-    //void changeImage(Long carID, MultipartFile file) throws IOException;
+    //void changeImage(Long carID, InputStream content) throws IOException;
     //Test when method changes an image with deletion of previous image
     @Test
     public void shouldChangeImage() throws IOException {
         Long carId = 1L;
-        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "content".getBytes());
+        InputStream content = new ByteArrayInputStream("content".getBytes());
 
         Car existingCar = new Car();
-        existingCar.setCarImage(new CarImage(2L, "imageContent".getBytes()));
+        CarImage previousImage = new CarImage("image/jpeg", "previousHash", 12, 1, false);
+        previousImage.setImageID(2L);
+        existingCar.setCarImage(previousImage);
 
         when(carRepository.getCarById(carId)).thenReturn(existingCar);
-        when(carImageRepository.save(any(CarImage.class))).thenAnswer(invocation -> {
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("newHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("newHash")).thenReturn(Optional.empty());
+        when(carImageRepository.saveAndFlush(any(CarImage.class))).thenAnswer(invocation -> {
             CarImage savedImage = invocation.getArgument(0);
             savedImage.setImageID(3L);
             return savedImage;
         });
+        when(carImageRepository.deleteIfUnreferenced(2L)).thenReturn(1);
 
-        carService.changeImage(carId, file);
+        carService.changeImage(carId, content);
 
         verify(carRepository, times(1)).getCarById(carId);
-        verify(carImageRepository, times(1)).save(any(CarImage.class));
+        verify(carImageRepository, times(1)).saveAndFlush(any(CarImage.class));
         verify(carRepository, times(1)).save(existingCar);
-        verify(carImageRepository, times(1)).deleteById(2L);
+        verify(carImageRepository, times(1)).addReferences(2L, -1);
+        verify(imageStorage, times(1)).delete("previousHash");
+
+        verify(renditionGenerator, times(1)).submit("newHash");
 
         assertEquals(3L, existingCar.getCarImage().getImageID());
+        assertEquals(1, existingCar.getCarImage().getReferenceCount());
+    }
+
+    //void changeImage(Long carID, InputStream content) throws IOException;
+    //Test when the car cannot be saved, the new image is released and the previous one is kept
+    @Test
+    public void shouldReleaseNewImageWhenCarIsNotSaved() throws IOException {
+        Long carId = 1L;
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+
+        Car existingCar = new Car();
+        CarImage previousImage = new CarImage("image/jpeg", "previousHash", 12, 1, false);
+        previousImage.setImageID(2L);
+        existingCar.setCarImage(previousImage);
+
+        when(carRepository.getCarById(carId)).thenReturn(existingCar);
+        when(carRepository.save(existingCar)).thenThrow(new IllegalStateException("Connection lost"));
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("newHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("newHash")).thenReturn(Optional.empty());
+        when(carImageRepository.saveAndFlush(any(CarImage.class))).thenAnswer(invocation -> {
+            CarImage savedImage = invocation.getArgument(0);
+            savedImage.setImageID(3L);
+            return savedImage;
+        });
+        when(carImageRepository.deleteIfUnreferenced(3L)).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> carService.changeImage(carId, content));
+
+        verify(carImageRepository, times(1)).addReferences(3L, -1);
+        verify(imageStorage, times(1)).delete("newHash");
+        verify(carImageRepository, never()).addReferences(eq(2L), anyInt());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    //void changeImage(Long carID, InputStream content) throws IOException;
+    //Test when method changes an image, but doesn't delete previous image (because it is still used)
+    @Test
+    public void shouldNotDeleteImageStillInUse() throws IOException {
+        Long carId = 1L;
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+
+        Car existingCar = new Car();
+        CarImage previousImage = new CarImage("image/jpeg", "defaultHash", 12, 5, true);
+        previousImage.setImageID(1L);
+        existingCar.setCarImage(previousImage);
+
+        when(carRepository.getCarById(carId)).thenReturn(existingCar);
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("newHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("newHash")).thenReturn(Optional.empty());
+        when(carImageRepository.saveAndFlush(any(CarImage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(carImageRepository.deleteIfUnreferenced(1L)).thenReturn(0);
+
+        carService.changeImage(carId, content);
+
+        verify(carImageRepository, times(1)).addReferences(1L, -1);
+        verify(imageStorage, never()).delete(anyString());
+    }
+
+    //void changeImage(Long carID, InputStream content) throws IOException;
+    //Test when the uploaded image has already been stored
+    @Test
+    public void shouldReuseIdenticalImage() throws IOException {
+        Long carId = 1L;
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+
+        Car existingCar = new Car();
+        CarImage previousImage = new CarImage("image/jpeg", "defaultHash", 12, 5, true);
+        previousImage.setImageID(1L);
+        existingCar.setCarImage(previousImage);
+
+        CarImage storedImage = new CarImage("image/jpeg", "sameHash", 7, 1, false);
+        storedImage.setImageID(4L);
+
+        when(carRepository.getCarById(carId)).thenReturn(existingCar);
+        when(imageStorage.store(any(InputStream.class))).thenReturn(new StoredImage("sameHash", 7, "image/jpeg"));
+        when(carImageRepository.findByContentHash("sameHash")).thenReturn(Optional.of(storedImage));
+
+        carService.changeImage(carId, content);
+
+        verify(carImageRepository, never()).saveAndFlush(any(CarImage.class));
+        verify(carImageRepository, times(1)).addReferences(4L, 1);
+        verify(renditionGenerator, never()).submit(anyString());
+        assertEquals(storedImage, existingCar.getCarImage());
     }
 
-    //void changeImage(Long carID, MultipartFile file) throws IOException;
-    //Test when method changes an image, but doesn't delete previous image (because id = 1)
+    //void changeImage(Long carID, InputStream content) throws IOException;
+    //Test when the uploaded image exceeds the size limit
     @Test
-    public void shouldNotDeleteDefaultImage() throws IOException {
+    public void shouldKeepPreviousImageWhenUploadTooLarge() throws IOException {
         Long carId = 1L;
-        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", "content".getBytes());
+        InputStream content = new ByteArrayInputStream("content".getBytes());
 
         Car existingCar = new Car();
-        existingCar.setCarImage(new CarImage(1L, "imageContent".getBytes()));
+        CarImage previousImage = new CarImage("image/jpeg", "previousHash", 12, 1, false);
+        previousImage.setImageID(2L);
+        existingCar.setCarImage(previousImage);
 
         when(carRepository.getCarById(carId)).thenReturn(existingCar);
+        when(imageStorage.store(any(InputStream.class))).thenThrow(new ImageTooLargeException(5));
 
-        carService.changeImage(carId, file);
+        assertThrows(ImageTooLargeException.class, () -> carService.changeImage(carId, content));
 
-        verify(carImageRepository, never()).deleteById(anyLong());
+        verify(carImageRepository, never()).saveAndFlush(any(CarImage.class));
+        verify(carImageRepository, never()).addReferences(anyLong(), anyInt());
+        verify(carRepository, never()).save(any(Car.class));
+        assertEquals(previousImage, existingCar.getCarImage());
     }
 
     //void delete(Car car);
@@ -85,15 +221,19 @@ public class CarServiceTests {
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_GASOLINE);
         CarImage carImage = new CarImage(1L, "fileContent".getBytes());
         Car car = new Car(1L, brand, model, 2022, 50000, fuelType, 200, "2.0L", 30000, true, carImage);
+        brand.setCarCount(1);
+        model.setCarCount(1);
 
         when(carRepository.findById(1L)).thenReturn(Optional.of(car));
-        when(carRepository.countByModelName(model.getName())).thenReturn(1L);
-        when(carRepository.countByBrandName(brand.getName())).thenReturn(1L);
+        when(carModelRepository.deleteIfUnused(model.getId())).thenReturn(1);
+        when(brandRepository.deleteIfUnused(brand.getId())).thenReturn(1);
 
         carService.delete(car);
 
-        verify(carModelRepository, times(1)).deleteById(model.getId());
-        verify(brandRepository, times(1)).deleteById(brand.getId());
+        verify(carModelRepository, times(1)).deleteIfUnused(model.getId());
+        verify(brandRepository, times(1)).deleteIfUnused(brand.getId());
+        verify(carModelRepository, never()).addCars(anyLong(), anyInt());
+        verify(brandRepository, never()).addCars(anyLong(), anyInt());
         verify(carRepository, times(1)).deleteById(car.getId());
     }
 
@@ -106,15 +246,17 @@ public class CarServiceTests {
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_GASOLINE);
         CarImage carImage = new CarImage(1L, "fileContent".getBytes());
         Car car = new Car(1L, brand, model, 2022, 50000, fuelType, 200, "2.0L", 30000, true, carImage);
+        brand.setCarCount(2);
+        model.setCarCount(2);
 
         when(carRepository.findById(1L)).thenReturn(Optional.of(car));
-        when(carRepository.countByModelName(model.getName())).thenReturn(2L);
-        when(carRepository.countByBrandName(brand.getName())).thenReturn(2L);
 
         carService.delete(car);
 
-        verify(carModelRepository, times(0)).deleteById(model.getId());
-        verify(brandRepository, times(0)).deleteById(brand.getId());
+        verify(carModelRepository, times(0)).deleteIfUnused(model.getId());
+        verify(brandRepository, times(0)).deleteIfUnused(brand.getId());
+        verify(carModelRepository, times(1)).addCars(model.getId(), -1);
+        verify(brandRepository, times(1)).addCars(brand.getId(), -1);
         verify(carRepository, times(1)).deleteById(car.getId());
     }
 
@@ -161,16 +303,43 @@ public class CarServiceTests {
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(model);
 
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelType));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelType));
 
         CarImage carImage = new CarImage(1L, "image.jpg".getBytes());
-        when(carImageRepository.findById(1L)).thenReturn(Optional.of(carImage));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(carImage));
 
         when(carRepository.save(any(Car.class))).thenReturn(new Car());
 
         carService.add(carRequest);
 
         verify(carRepository, times(1)).save(any(Car.class));
+        verify(brandRepository, times(1)).addCars(1L, 1);
+        verify(carModelRepository, times(1)).addCars(1L, 1);
+    }
+
+    //void add(AddCarRequest carRequest)
+    //Add cars with a brand and model already known to the dictionary
+    @Test
+    void addCarWithKnownBrandAndModel() {
+        AddCarRequest carRequest = new AddCarRequest(150, 200, 2022, 50000, "brand", "model", "1.4", 1L);
+
+        when(brandRepository.findByName(carRequest.getBrand())).thenReturn(new Brand(1L, carRequest.getBrand()));
+        when(carModelRepository.findByName(carRequest.getModel())).thenReturn(new CarModel(1L, carRequest.getModel()));
+        when(brandRepository.addCars(1L, 1)).thenReturn(1);
+        when(carModelRepository.addCars(1L, 1)).thenReturn(1);
+        when(brandRepository.getReferenceById(1L)).thenReturn(new Brand(1L, carRequest.getBrand()));
+        when(carModelRepository.getReferenceById(1L)).thenReturn(new CarModel(1L, carRequest.getModel()));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(new FuelType(FuelTypeEnum.FUEL_DIESEL)));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(new CarImage(1L, "image.jpg".getBytes())));
+
+        carService.add(carRequest);
+        carService.add(carRequest);
+
+        verify(brandRepository, times(1)).findByName(carRequest.getBrand());
+        verify(carModelRepository, times(1)).findByName(carRequest.getModel());
+        verify(brandRepository, times(2)).addCars(1L, 1);
+        verify(carModelRepository, times(2)).addCars(1L, 1);
+        verify(carRepository, times(2)).save(any(Car.class));
     }
 
     //void add(AddCarRequest carRequest)
@@ -180,21 +349,28 @@ public class CarServiceTests {
         AddCarRequest carRequest = new AddCarRequest(150, 200, 2022, 50000, "brand", "model", "1.4", 1L);
 
         when(brandRepository.findByName(carRequest.getBrand())).thenReturn(null);
+        when(brandRepository.saveAndFlush(any(Brand.class))).thenAnswer(invocation -> {
+            Brand savedBrand = invocation.getArgument(0);
+            savedBrand.setId(2L);
+            return savedBrand;
+        });
 
         CarModel model = new CarModel(1L, carRequest.getModel());
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(model);
 
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelType));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelType));
 
         CarImage carImage = new CarImage(1L, "image.jpg".getBytes());
-        when(carImageRepository.findById(1L)).thenReturn(Optional.of(carImage));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(carImage));
 
         when(carRepository.save(any(Car.class))).thenReturn(new Car());
 
         carService.add(carRequest);
 
         verify(carRepository, times(1)).save(any(Car.class));
+        verify(brandRepository, times(1)).saveAndFlush(argThat(savedBrand -> savedBrand.getCarCount() == 1));
+        verify(carModelRepository, times(1)).addCars(1L, 1);
     }
 
     //void add(AddCarRequest carRequest)
@@ -207,22 +383,29 @@ public class CarServiceTests {
         when(brandRepository.findByName(carRequest.getBrand())).thenReturn(brand);
 
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(null);
+        when(carModelRepository.saveAndFlush(any(CarModel.class))).thenAnswer(invocation -> {
+            CarModel savedModel = invocation.getArgument(0);
+            savedModel.setId(2L);
+            return savedModel;
+        });
 
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelType));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelType));
 
         CarImage carImage = new CarImage(1L, "image.jpg".getBytes());
-        when(carImageRepository.findById(1L)).thenReturn(Optional.of(carImage));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(carImage));
 
         when(carRepository.save(any(Car.class))).thenReturn(new Car());
 
         carService.add(carRequest);
 
         verify(carRepository, times(1)).save(any(Car.class));
+        verify(carModelRepository, times(1)).saveAndFlush(argThat(savedModel -> savedModel.getCarCount() == 1));
+        verify(brandRepository, times(1)).addCars(1L, 1);
     }
 
     //void add(AddCarRequest carRequest)
-    //Add a car when the default car image doesn't exist (default car image ID = 1)
+    //Add a car when the default car image doesn't exist
     @Test
     void addCarWhenCarImageNotFound() {
         AddCarRequest carRequest = new AddCarRequest(150, 200, 2022, 50000, "brand", "model", "1.4", 1L);
@@ -234,9 +417,9 @@ public class CarServiceTests {
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(model);
 
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelType));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelType));
 
-        when(carImageRepository.findById(1L)).thenReturn(Optional.empty());
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.empty());
 
         assertThrows(RuntimeException.class, () -> carService.add(carRequest));
     }
@@ -253,10 +436,10 @@ public class CarServiceTests {
         CarModel model = new CarModel(1L, carRequest.getModel());
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(model);
 
-        when(fuelTypeRepository.findById(carRequest.getFuelType())).thenReturn(null);
+        when(referenceData.findFuelType(carRequest.getFuelType())).thenReturn(null);
 
         CarImage carImage = new CarImage(1L, "image.jpg".getBytes());
-        when(carImageRepository.findById(1L)).thenReturn(Optional.of(carImage));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(carImage));
 
         assertThrows(RuntimeException.class, () -> carService.add(carRequest));
     }
@@ -278,21 +461,23 @@ public class CarServiceTests {
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
         Car car = new Car(brand, carModel, 2020, 20000, fuelType, 120, "2.0L", 25000, true, null);
 
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelTypeRequest));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelTypeRequest));
         when(carRepository.getCarById(carID)).thenReturn(car);
         when(carRepository.save(any(Car.class))).thenReturn(car);
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(carModelRequest);
         when(brandRepository.findByName(carRequest.getBrand())).thenReturn(brandRequest);
-        when(carRepository.existsByBrandName(brand.getName())).thenReturn(true);
-        when(carRepository.existsByModelName(carModel.getName())).thenReturn(true);
+        brand.setCarCount(2);
+        carModel.setCarCount(2);
 
         carService.update(carID, carRequest);
 
         verify(carRepository, times(1)).getCarById(carID);
         verify(carRepository, times(1)).save(car);
-        verify(brandRepository, times(0)).deleteByName(anyString());
-        verify(carModelRepository, times(0)).deleteByName(anyString());
-        verify(fuelTypeRepository, times(1)).findById(anyLong());
+        verify(brandRepository, times(0)).deleteIfUnused(anyLong());
+        verify(carModelRepository, times(0)).deleteIfUnused(anyLong());
+        verify(brandRepository, times(1)).addCars(brand.getId(), -1);
+        verify(carModelRepository, times(1)).addCars(carModel.getId(), -1);
+        verify(referenceData, times(1)).findFuelType(anyLong());
 
         assertEquals(carRequest.getHorsePower(), car.getHorsePower());
         assertEquals(carRequest.getPrice(), car.getPrice());
@@ -321,21 +506,26 @@ public class CarServiceTests {
         FuelType fuelType = new FuelType(FuelTypeEnum.FUEL_DIESEL);
         Car car = new Car(brand, carModel, 2020, 20000, fuelType, 120, "2.0L", 25000, true, null);
 
-        when(fuelTypeRepository.findById(1L)).thenReturn(Optional.of(fuelTypeRequest));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(fuelTypeRequest));
         when(carRepository.getCarById(carID)).thenReturn(car);
         when(carRepository.save(any(Car.class))).thenReturn(car);
         when(carModelRepository.findByName(carRequest.getModel())).thenReturn(carModelRequest);
         when(brandRepository.findByName(carRequest.getBrand())).thenReturn(brandRequest);
-        when(carRepository.existsByBrandName(brand.getName())).thenReturn(false);
-        when(carRepository.existsByModelName(carModel.getName())).thenReturn(false);
+        brand.setCarCount(1);
+        carModel.setCarCount(1);
+        when(brandRepository.deleteIfUnused(brand.getId())).thenReturn(1);
+        when(carModelRepository.deleteIfUnused(carModel.getId())).thenReturn(1);
 
         carService.update(carID, carRequest);
 
         verify(carRepository, times(1)).getCarById(carID);
         verify(carRepository, times(1)).save(car);
-        verify(brandRepository, times(1)).deleteByName(anyString());
-        verify(carModelRepository, times(1)).deleteByName(anyString());
-        verify(fuelTypeRepository, times(1)).findById(anyLong());
+        verify(carRepository, times(1)).flush();
+        verify(brandRepository, times(1)).deleteIfUnused(brand.getId());
+        verify(carModelRepository, times(1)).deleteIfUnused(carModel.getId());
+        verify(brandRepository, never()).addCars(brand.getId(), -1);
+        verify(carModelRepository, never()).addCars(carModel.getId(), -1);
+        verify(referenceData, times(1)).findFuelType(anyLong());
 
         assertEquals(carRequest.getHorsePower(), car.getHorsePower());
         assertEquals(carRequest.getPrice(), car.getPrice());
@@ -347,4 +537,172 @@ public class CarServiceTests {
         assertEquals(fuelTypeRequest.getName(), car.getFuelType().getName());
     }
 
+    //CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size);
+    //Test when there are more cars than the page size
+    @Test
+    public void shouldReturnNextCursorWhenMoreCarsAvailable() {
+        CarSummaryResponse first = summary(1L, 100);
+        CarSummaryResponse second = summary(3L, 200);
+        CarSummaryResponse third = summary(2L, 300);
+
+        when(carRepository.findAllSummaries()).thenReturn(List.of(first, third, second));
+        catalog.load();
+
+        CarPageResponse<CarSummaryResponse> page = carService.findAvailableCars(CarCursor.first(CarCursor.SORT_PRICE), 2);
+
+        assertEquals(List.of(1L, 3L), page.getCars().stream().map(CarSummaryResponse::getId).toList());
+
+        CarCursor nextCursor = CarCursor.decode(page.getNextCursor());
+        assertEquals(CarCursor.SORT_PRICE, nextCursor.getSort());
+        assertEquals(3L, nextCursor.getLastId());
+        assertEquals(200, nextCursor.getLastPrice());
+    }
+
+    //CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size);
+    //Test when the last page is returned
+    @Test
+    public void shouldNotReturnNextCursorOnLastPage() {
+        when(carRepository.findAllSummaries()).thenReturn(List.of(summary(4L, 100), summary(5L, 100)));
+        catalog.load();
+
+        CarPageResponse<CarSummaryResponse> page = carService.findAvailableCars(new CarCursor(CarCursor.SORT_ID, 4L, null), 2);
+
+        assertEquals(List.of(5L), page.getCars().stream().map(CarSummaryResponse::getId).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    //CarPageResponse<CarSummaryResponse> findAvailableCars(CarCursor cursor, int size, LocalDate from, LocalDate to);
+    //Test when some cars are booked for the requested dates
+    @Test
+    public void shouldSkipCarsBookedForRequestedDates() {
+        CarSummaryResponse booked = summary(1L, 100);
+        CarSummaryResponse free = summary(2L, 100);
+
+        availabilityIndex.put(1L, 10L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 10));
+        availabilityIndex.put(2L, 11L, LocalDate.of(2024, 5, 11), LocalDate.of(2024, 5, 12));
+
+        when(carRepository.findAllSummaries()).thenReturn(List.of(booked, free));
+        catalog.load();
+
+        CarPageResponse<CarSummaryResponse> page = carService.findAvailableCars(CarCursor.first(CarCursor.SORT_ID), 2,
+                LocalDate.of(2024, 5, 5), LocalDate.of(2024, 5, 7));
+
+        assertEquals(List.of(2L), page.getCars().stream().map(CarSummaryResponse::getId).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    //int update(CarBulkUpdateRequest request);
+    //Test when method runs one bulk update and publishes the IDs of the changed cars
+    @Test
+    public void shouldBulkUpdateCars(){
+        CarFilter filter = new CarFilter("Audi", null, 2015, null, null);
+        CarBulkUpdateRequest request = new CarBulkUpdateRequest(filter, null, -10, null, null);
+
+        when(carRepository.findLockedIds(filter)).thenReturn(List.of(3L, 7L));
+        when(carRepository.update(request)).thenReturn(2);
+
+        assertEquals(2, carService.update(request));
+
+        verify(carRepository, times(1)).update(request);
+        verify(carRepository, never()).findRentedIds(any(CarFilter.class), any(RentalStatus.class), any(LocalDate.class));
+        verify(carRepository, never()).save(any(Car.class));
+        verify(eventPublisher, times(1)).publishEvent(new CarChangedEvent(List.of(3L, 7L)));
+    }
+
+    //int update(CarBulkUpdateRequest request);
+    //Test when method rejects an unknown fuel type before updating anything
+    @Test
+    public void shouldNotBulkUpdateWithUnknownFuelType(){
+        CarBulkUpdateRequest request = new CarBulkUpdateRequest(new CarFilter(), null, null, null, 9L);
+
+        when(referenceData.findFuelType(9L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> carService.update(request));
+
+        verify(carRepository, never()).update(any(CarBulkUpdateRequest.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    //int update(CarBulkUpdateRequest request);
+    //Test when cars rented today are withdrawn and nothing is updated
+    @Test
+    public void shouldNotWithdrawRentedCars(){
+        CarFilter filter = new CarFilter("Audi", null, null, null, null);
+        CarBulkUpdateRequest request = new CarBulkUpdateRequest(filter, null, null, false, null);
+        RentalStatus accepted = new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED);
+
+        when(carRepository.findLockedIds(filter)).thenReturn(List.of(3L, 7L));
+        when(referenceData.getRentalStatus(RentalStatusEnum.STATUS_ACCEPTED)).thenReturn(accepted);
+        when(carRepository.findRentedIds(filter, accepted, LocalDate.now())).thenReturn(List.of(3L));
+
+        CarsRentedException exception = assertThrows(CarsRentedException.class, () -> carService.update(request));
+
+        assertEquals(List.of(3L), exception.getCarIDs());
+        verify(carRepository, never()).update(any(CarBulkUpdateRequest.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    //int update(CarBulkUpdateRequest request);
+    //Test when the filter matches no car or an empty ID list and nothing is locked or updated
+    @Test
+    public void shouldSkipBulkUpdateWithoutMatchingCars(){
+        CarFilter filter = new CarFilter("Audi", null, null, null, null);
+
+        assertEquals(0, carService.update(new CarBulkUpdateRequest(filter, 100, null, null, null)));
+        assertEquals(0, carService.update(new CarBulkUpdateRequest(new CarFilter(null, null, null, null, List.of()), 100, null, null, null)));
+
+        verify(carRepository, times(1)).findLockedIds(any(CarFilter.class));
+        verify(carRepository, never()).update(any(CarBulkUpdateRequest.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    //Resource load(CarImage carImage);
+    //Test when the image has not been moved to the storage yet and its content is read from the database on its own
+    @Test
+    public void shouldLoadLegacyImageContentSeparately() throws IOException {
+        CarImage carImage = new CarImage();
+        carImage.setImageID(4L);
+
+        when(carImageRepository.findFileContentById(4L)).thenReturn("content".getBytes());
+
+        CarImageService carImageService = new CarImageServiceImpl(carImageRepository, imageStorage, renditionGenerator, imageCache, mock(PlatformTransactionManager.class));
+
+        assertArrayEquals("content".getBytes(), carImageService.load(carImage).getContentAsByteArray());
+        verify(imageStorage, never()).load(anyString());
+    }
+
+    //void add(AddCarRequest carRequest)
+    //Test when a new brand and model can be found by prefix and with typos, and disappear with their last car
+    @Test
+    public void shouldSuggestNamesOfAddedCarUntilDeleted() {
+        AddCarRequest carRequest = new AddCarRequest(150, 200, 2022, 50000, "Mercedes-Benz", "Sprinter", "2.1", 1L);
+
+        when(brandRepository.saveAndFlush(any(Brand.class))).thenReturn(new Brand(1L, "Mercedes-Benz"));
+        when(carModelRepository.saveAndFlush(any(CarModel.class))).thenReturn(new CarModel(2L, "Sprinter"));
+        when(referenceData.findFuelType(1L)).thenReturn(Optional.of(new FuelType(FuelTypeEnum.FUEL_DIESEL)));
+        when(carImageRepository.findFirstByDefaultImageTrue()).thenReturn(Optional.of(new CarImage(1L, new byte[0])));
+
+        carService.add(carRequest);
+
+        assertEquals(List.of("Mercedes-Benz"), suggestIndex.suggest("merc", 10).stream().map(NameSuggestion::getName).toList());
+        assertEquals(1, suggestIndex.suggest("mersedes", 10).get(0).getDistance());
+        assertEquals(NameSuggestion.TYPE_MODEL, suggestIndex.suggest("sprinetr", 10).get(0).getType());
+        assertTrue(suggestIndex.suggest("audi", 10).isEmpty());
+
+        Brand brand = new Brand(1L, "Mercedes-Benz");
+        brand.setCarCount(1);
+        CarModel model = new CarModel(2L, "Sprinter");
+        model.setCarCount(1);
+        when(brandRepository.deleteIfUnused(1L)).thenReturn(1);
+        when(carModelRepository.deleteIfUnused(2L)).thenReturn(1);
+
+        carService.delete(new Car(3L, brand, model, 2022, 50000, null, 150, "2.1", 200, true, new CarImage(1L, new byte[0])));
+
+        assertTrue(suggestIndex.suggest("merc", 10).isEmpty());
+        assertTrue(suggestIndex.suggest("sprinter", 10).isEmpty());
+    }
+
+    private static CarSummaryResponse summary(Long id, Integer price) {
+        return new CarSummaryResponse(id, "Audi", "Avant", 2020, 1000, FuelTypeEnum.FUEL_DIESEL, 150, "2.0", price, true, null);
+    }
 }
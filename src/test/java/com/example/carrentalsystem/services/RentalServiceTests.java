@@ -1,11 +1,18 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ActiveRentalCache;
+import com.example.carrentalsystem.cache.CarAvailabilityIndex;
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.*;
 import com.example.carrentalsystem.payload.request.AddCarRentalRequest;
 import com.example.carrentalsystem.payload.request.EditCarRentalRequest;
+import com.example.carrentalsystem.payload.response.RentalStatusChangeResponse;
 import com.example.carrentalsystem.repositories.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
@@ -23,18 +30,22 @@ public class RentalServiceTests {
     private UserServiceImpl userService;
     private CarRepository carRepository;
     private UserRepository userRepository;
+    private CarAvailabilityIndex availabilityIndex;
+    private ReservationSlotRepository reservationSlotRepository;
 
     @BeforeEach
     void setUp(){
         rentalRepository = mock(RentalRepository.class);
         statusHistoryRepository = mock(StatusHistoryRepository.class);
-        RentalStatusRepository rentalStatusRepository = mock(RentalStatusRepository.class);
-        rentalStatusService = new RentalStatusServiceImpl(rentalStatusRepository);
+        ReferenceDataRegistry referenceData = mock(ReferenceDataRegistry.class);
+        rentalStatusService = new RentalStatusServiceImpl(referenceData);
         userRepository = mock(UserRepository.class);
-        RoleRepository roleRepository = mock(RoleRepository.class);
-        userService = new UserServiceImpl(userRepository, null, null, roleRepository, null);
+        userService = new UserServiceImpl(userRepository, null, null, referenceData, null, null);
         carRepository = mock(CarRepository.class);
-        rentalService = new RentalServiceImpl(rentalRepository, statusHistoryRepository, userRepository, carRepository, rentalStatusRepository);
+        availabilityIndex = new CarAvailabilityIndex(rentalRepository);
+        reservationSlotRepository = mock(ReservationSlotRepository.class);
+        rentalService = new RentalServiceImpl(rentalRepository, statusHistoryRepository, userRepository, carRepository, referenceData, availabilityIndex, reservationSlotRepository,
+                new ActiveRentalCache(rentalRepository, referenceData));
     }
 
     //void changeStatus(Long statusID, Long rentalID);
@@ -44,7 +55,7 @@ public class RentalServiceTests {
         Long nonExistingStatusId = 999L;
         Long rentalID = 1L;
 
-        when(rentalRepository.getReferenceById(rentalID)).thenReturn(new Rental());
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(new Rental()));
         when(rentalStatusService.findById(nonExistingStatusId)).thenReturn(null);
 
         assertThrows(RuntimeException.class, () -> rentalService.changeStatus(nonExistingStatusId, rentalID));
@@ -57,19 +68,179 @@ public class RentalServiceTests {
         Long statusID = 1L;
         Long rentalID = 2L;
 
-        Rental rental = new Rental(new Car(), LocalDate.of(2023, 1, 1), LocalDate.of(2026, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.of(2023, 1, 1), LocalDate.of(2026, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
         RentalStatus newRentalStatus = new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED);
 
-        when(rentalRepository.getReferenceById(rentalID)).thenReturn(rental);
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(rental));
         when(rentalStatusService.findById(statusID)).thenReturn(Optional.of(newRentalStatus));
 
         rentalService.changeStatus(statusID, rentalID);
 
-        verify(rentalRepository, times(1)).getReferenceById(rentalID);
+        verify(rentalRepository, times(1)).findLockedById(rentalID);
         verify(rentalRepository, times(1)).save(rental);
 
         assertEquals(newRentalStatus, rental.getRentalStatus());
-        assertFalse(rental.getStatusHistory().isEmpty());
+        verify(statusHistoryRepository, times(1)).save(argThat(history -> history.getRental() == rental && history.getStatusAfterChange() == newRentalStatus));
+        assertFalse(availabilityIndex.isFree(3L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2)));
+    }
+
+    //void changeStatus(Long statusID, Long rentalID);
+    //Method test when the rental is rejected, which frees the car
+    @Test
+    public void changeStatusToRejectedFreesCar() {
+        Long statusID = 4L;
+        Long rentalID = 2L;
+
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
+        availabilityIndex.put(3L, rentalID, rental.getStartDate(), rental.getEndDate());
+
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(rental));
+        when(rentalStatusService.findById(statusID)).thenReturn(Optional.of(new RentalStatus(RentalStatusEnum.STATUS_REJECTED)));
+
+        rentalService.changeStatus(statusID, rentalID);
+
+        assertTrue(availabilityIndex.isFree(3L, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 6)));
+    }
+
+    //void changeStatus(Long statusID, Long rentalID);
+    //Method test when the booking of an accepted rental only reaches the availability index once the transaction commits
+    @Test
+    public void changeStatusUpdatesAvailabilityAfterCommit() {
+        Long statusID = 1L;
+        Long rentalID = 2L;
+
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_REJECTED));
+
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(rental));
+        when(rentalStatusService.findById(statusID)).thenReturn(Optional.of(new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            rentalService.changeStatus(statusID, rentalID);
+            assertTrue(availabilityIndex.isFree(3L, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 6)));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertFalse(availabilityIndex.isFree(3L, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 6)));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    //void delete(Long rentalID);
+    //Method test when the transaction deleting the rental rolls back and the car stays booked
+    @Test
+    public void deleteKeepsAvailabilityWhenRolledBack() {
+        Long rentalID = 2L;
+
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
+        availabilityIndex.put(3L, rentalID, rental.getStartDate(), rental.getEndDate());
+
+        when(rentalRepository.getReferenceById(rentalID)).thenReturn(rental);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            rentalService.delete(rentalID);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertFalse(availabilityIndex.isFree(3L, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 6)));
+    }
+
+    //void changeStatus(Long statusID, Long rentalID);
+    //Method test when an accepted rental is moved back to pending
+    @Test
+    public void changeStatusWhenTransitionNotAllowed() {
+        Long statusID = 1L;
+        Long rentalID = 2L;
+
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED));
+
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(rental));
+        when(rentalStatusService.findById(statusID)).thenReturn(Optional.of(new RentalStatus(RentalStatusEnum.STATUS_PENDING)));
+
+        assertThrows(RentalStatusTransitionException.class, () -> rentalService.changeStatus(statusID, rentalID));
+
+        verify(rentalRepository, never()).save(any(Rental.class));
+        verify(statusHistoryRepository, never()).save(any(StatusHistory.class));
+    }
+
+    //List<RentalStatusChangeResponse> changeStatuses(List<Long> rentalIDs, Long statusID);
+    //Method test when some of the rentals are missing or cannot be accepted
+    @Test
+    public void changeStatusesReturnsResultOfEveryRental() {
+        RentalStatus pending = new RentalStatus(RentalStatusEnum.STATUS_PENDING);
+        RentalStatus accepted = new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED);
+        RentalStatus cancelled = new RentalStatus(RentalStatusEnum.STATUS_CANCELLED);
+
+        when(rentalStatusService.findById(1L)).thenReturn(Optional.of(pending));
+        when(rentalStatusService.findById(2L)).thenReturn(Optional.of(accepted));
+        when(rentalStatusService.findById(3L)).thenReturn(Optional.of(cancelled));
+        List<RentalState> states = List.of(state(10L, 5L, 1L), state(11L, 6L, 3L));
+        when(rentalRepository.findStatesByIdIn(List.of(10L, 11L, 12L))).thenReturn(states);
+
+        List<RentalStatusChangeResponse> results = rentalService.changeStatuses(List.of(10L, 11L, 12L), 2L);
+
+        assertEquals(List.of(10L, 11L, 12L), results.stream().map(RentalStatusChangeResponse::getRentalID).toList());
+        assertEquals(List.of(RentalStatusChangeResponse.Result.CHANGED, RentalStatusChangeResponse.Result.NOT_ALLOWED, RentalStatusChangeResponse.Result.NOT_FOUND),
+                results.stream().map(RentalStatusChangeResponse::getResult).toList());
+        verify(rentalRepository, times(1)).updateStatusByIdIn(accepted, List.of(10L));
+        verify(statusHistoryRepository, times(1)).saveAll(argThat(history -> ((List<?>) history).size() == 1));
+        assertFalse(availabilityIndex.isFree(5L, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 2)));
+    }
+
+    //boolean isCarRented(Long carID);
+    //Test method when the answer is cached until a rental of the car is accepted
+    @Test
+    public void isCarRentedProbesOnceUntilRentalAccepted() {
+        Long statusID = 1L;
+        Long rentalID = 2L;
+
+        Car car = new Car();
+        car.setId(3L);
+        Rental rental = new Rental(car, LocalDate.now(), LocalDate.now().plusDays(2), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
+
+        when(rentalRepository.existsActiveByCarId(eq(3L), any(), eq(LocalDate.now()))).thenReturn(false, true);
+        when(rentalRepository.findLockedById(rentalID)).thenReturn(Optional.of(rental));
+        when(rentalStatusService.findById(statusID)).thenReturn(Optional.of(new RentalStatus(RentalStatusEnum.STATUS_ACCEPTED)));
+
+        assertFalse(rentalService.isCarRented(3L));
+        assertFalse(rentalService.isCarRented(3L));
+        verify(rentalRepository, times(1)).existsActiveByCarId(eq(3L), any(), any());
+
+        rentalService.changeStatus(statusID, rentalID);
+
+        assertTrue(rentalService.isCarRented(3L));
+        verify(rentalRepository, times(2)).existsActiveByCarId(eq(3L), any(), any());
+    }
+
+    //boolean isCarRented(Long carID);
+    //Test method when a rental of the car changes while the car is probed
+    @Test
+    public void isCarRentedDoesNotKeepAnswerProbedDuringEviction() {
+        ActiveRentalCache activeRentalCache = new ActiveRentalCache(rentalRepository, mock(ReferenceDataRegistry.class));
+
+        when(rentalRepository.existsActiveByCarId(eq(3L), any(), eq(LocalDate.now()))).thenAnswer(invocation -> {
+            activeRentalCache.evict(3L);
+            return false;
+        }).thenReturn(true);
+
+        assertFalse(activeRentalCache.isRented(3L));
+        assertTrue(activeRentalCache.isRented(3L));
+        assertTrue(activeRentalCache.isRented(3L));
+        verify(rentalRepository, times(2)).existsActiveByCarId(eq(3L), any(), any());
     }
 
     //boolean existsDateAndStatus(LocalDate date, RentalStatusEnum status);
@@ -112,32 +283,65 @@ public class RentalServiceTests {
         when(carRepository.getReferenceById(1L)).thenReturn(car);
         when(userService.getUserById(2L)).thenReturn(new User());
         when(rentalStatusService.findByName(RentalStatusEnum.STATUS_PENDING)).thenReturn(new RentalStatus());
-        StatusHistory statusHistory = new StatusHistory(null, LocalDate.now());
-        when(statusHistoryRepository.save(statusHistory)).thenReturn(statusHistory);
+        when(rentalRepository.save(any(Rental.class))).thenAnswer(invocation -> {
+            Rental savedRental = invocation.getArgument(0);
+            savedRental.setId(5L);
+            return savedRental;
+        });
+
+        User user = new User();
+        when(userRepository.getReferenceById(2L)).thenReturn(user);
 
         rentalService.add(request);
 
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(rentalRepository, times(1)).save(argThat(rental -> rental.getUser() == user));
+        verify(userRepository, never()).save(any(User.class));
+        assertTrue(user.getRentals().isEmpty());
         verify(statusHistoryRepository, times(1)).save(any(StatusHistory.class));
+        verify(reservationSlotRepository, times(1)).reserve(1L, 5L, request.getStartDate(), request.getEndDate());
+        assertFalse(availabilityIndex.isFree(1L, request.getStartDate(), request.getStartDate()));
+    }
+
+    //void add(AddCarRentalRequest request)
+    //Test method when some of the days are already booked
+    @Test
+    public void testAddRentalWhenDaysAreBooked() {
+        AddCarRentalRequest request = new AddCarRentalRequest(1L, 2L, LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 5), LocalDate.now());
+        Car car = new Car(1L, new Brand(1L, "CarBrand"), new CarModel(1L, "CarModel"), 2022, 50000, null, 200, "2.0L", 300, true, null);
+        List<LocalDate> bookedDays = List.of(LocalDate.of(2023, 1, 4), LocalDate.of(2023, 1, 5));
+
+        when(carRepository.getReferenceById(1L)).thenReturn(car);
+        when(rentalRepository.save(any(Rental.class))).thenAnswer(invocation -> {
+            Rental savedRental = invocation.getArgument(0);
+            savedRental.setId(5L);
+            return savedRental;
+        });
+        doThrow(new DuplicateKeyException("Duplicate entry")).when(reservationSlotRepository).reserve(1L, 5L, request.getStartDate(), request.getEndDate());
+        when(reservationSlotRepository.findBookedDays(1L, 5L, request.getStartDate(), request.getEndDate())).thenReturn(bookedDays);
+
+        ReservationConflictException conflict = assertThrows(ReservationConflictException.class, () -> rentalService.add(request));
+
+        assertEquals(bookedDays, conflict.getBookedDays());
+        assertTrue(availabilityIndex.isFree(1L, request.getStartDate(), request.getEndDate()));
     }
 
     //void delete(Long rentalID);
-    //Test method when rental has status history
+    //Test method when rental has status history, which is removed with one statement
     @Test
     public void testDeleteRentalWithStatusHistory() {
         Long rentalId = 1L;
 
         Rental rental = new Rental(new Car(), LocalDate.of(2023, 1, 1), LocalDate.of(2026, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
-        List<StatusHistory> historyList = List.of(new StatusHistory(1L, new RentalStatus(RentalStatusEnum.STATUS_PENDING), LocalDate.now()));
-        rental.setStatusHistory(historyList);
-        
-        when(rentalService.findById(rentalId)).thenReturn(rental);
+
+        when(rentalRepository.getReferenceById(rentalId)).thenReturn(rental);
         when(rentalRepository.findById(rentalId)).thenReturn(Optional.of(rental));
+        when(statusHistoryRepository.deleteByRentalId(rentalId)).thenReturn(3);
 
         rentalService.delete(rentalId);
 
         verify(rentalRepository, times(1)).getReferenceById(rentalId);
-        verify(statusHistoryRepository, times(1)).deleteById(anyLong());
+        verify(statusHistoryRepository, times(1)).deleteByRentalId(rentalId);
+        verify(statusHistoryRepository, never()).deleteById(anyLong());
         verify(rentalRepository, times(1)).deleteById(rentalId);
     }
 
@@ -149,7 +353,7 @@ public class RentalServiceTests {
 
         Rental rental = new Rental(new Car(), LocalDate.of(2023, 1, 1), LocalDate.of(2026, 1, 10), LocalDate.now(), 2000L, new RentalStatus(RentalStatusEnum.STATUS_PENDING));
 
-        when(rentalService.findById(rentalId)).thenReturn(rental);
+        when(rentalRepository.getReferenceById(rentalId)).thenReturn(rental);
         when(rentalRepository.findById(rentalId)).thenReturn(Optional.of(rental));
 
         rentalService.delete(rentalId);
@@ -201,4 +405,13 @@ public class RentalServiceTests {
         assertEquals(car.getPrice().longValue(), rental.getPrice());
     }
 
+    private static RentalState state(Long rentalID, Long carID, Long statusID) {
+        RentalState state = mock(RentalState.class);
+        when(state.getId()).thenReturn(rentalID);
+        when(state.getCarId()).thenReturn(carID);
+        when(state.getStartDate()).thenReturn(LocalDate.of(2024, 1, 1));
+        when(state.getEndDate()).thenReturn(LocalDate.of(2024, 1, 5));
+        when(state.getStatusId()).thenReturn(statusID);
+        return state;
+    }
 }
@@ -1,11 +1,11 @@
 package com.example.carrentalsystem.services;
 
+import com.example.carrentalsystem.cache.ReferenceDataRegistry;
 import com.example.carrentalsystem.models.Role;
 import com.example.carrentalsystem.models.RoleEnum;
 import com.example.carrentalsystem.models.User;
 import com.example.carrentalsystem.payload.request.LoginRequest;
 import com.example.carrentalsystem.payload.response.LoginResponse;
-import com.example.carrentalsystem.repositories.RoleRepository;
 import com.example.carrentalsystem.repositories.UserRepository;
 import com.example.carrentalsystem.security.jwt.JWTUtils;
 import com.example.carrentalsystem.security.services.UserDetailsImpl;
@@ -25,7 +25,7 @@ import static org.mockito.Mockito.*;
 public class UserServiceTests {
     private UserServiceImpl userService;
     private UserRepository userRepository;
-    private RoleRepository roleRepository;
+    private ReferenceDataRegistry referenceData;
     private PasswordEncoder passwordEncoder;
     private JWTUtils jwtUtils;
     private AuthenticationManager authenticationManager;
@@ -33,11 +33,11 @@ public class UserServiceTests {
     @BeforeEach
     void setUp(){
         userRepository = mock(UserRepository.class);
-        roleRepository = mock(RoleRepository.class);
+        referenceData = mock(ReferenceDataRegistry.class);
         passwordEncoder = mock(PasswordEncoder.class);
         jwtUtils = mock(JWTUtils.class);
         authenticationManager = mock(AuthenticationManager.class);
-        userService = new UserServiceImpl(userRepository, jwtUtils, authenticationManager, roleRepository, passwordEncoder);
+        userService = new UserServiceImpl(userRepository, jwtUtils, authenticationManager, referenceData, passwordEncoder, mock(RentalService.class));
     }
 
     //Role findRole(String stringRole);
@@ -45,7 +45,7 @@ public class UserServiceTests {
     @Test
     public void testFindRoleWithNullName(){
         Role userRole = new Role(RoleEnum.ROLE_USER);
-        when(roleRepository.findByName(RoleEnum.ROLE_USER)).thenReturn(Optional.of(userRole));
+        when(referenceData.getRole(RoleEnum.ROLE_USER)).thenReturn(userRole);
 
         Role resultRole = userService.findRole(null);
 
@@ -57,7 +57,7 @@ public class UserServiceTests {
     @Test
     public void testFindRoleWithUnknownRoleName(){
         Role userRole = new Role(RoleEnum.ROLE_USER);
-        when(roleRepository.findByName(RoleEnum.ROLE_USER)).thenReturn(Optional.of(userRole));
+        when(referenceData.getRole(RoleEnum.ROLE_USER)).thenReturn(userRole);
 
         Role resultRole = userService.findRole("moderator");
 
@@ -69,7 +69,7 @@ public class UserServiceTests {
     @Test
     public void testFindRoleWithAdminRole(){
         Role adminRole = new Role(RoleEnum.ROLE_ADMIN);
-        when(roleRepository.findByName(RoleEnum.ROLE_ADMIN)).thenReturn(Optional.of(adminRole));
+        when(referenceData.getRole(RoleEnum.ROLE_ADMIN)).thenReturn(adminRole);
 
         Role resultRole = userService.findRole("admin");
 
@@ -81,7 +81,7 @@ public class UserServiceTests {
     @Test
     public void testFindRoleWithUserRole(){
         Role userRole = new Role(RoleEnum.ROLE_USER);
-        when(roleRepository.findByName(RoleEnum.ROLE_USER)).thenReturn(Optional.of(userRole));
+        when(referenceData.getRole(RoleEnum.ROLE_USER)).thenReturn(userRole);
 
         Role resultRole = userService.findRole("user");
 
@@ -99,7 +99,7 @@ public class UserServiceTests {
         when(userRepository.findById(userID)).thenReturn(Optional.of(existingUser));
 
         Role newRole = new Role(RoleEnum.ROLE_USER);
-        when(roleRepository.findByName(RoleEnum.ROLE_USER)).thenReturn(Optional.of(newRole));
+        when(referenceData.getRole(RoleEnum.ROLE_USER)).thenReturn(newRole);
 
         when(userService.getUserById(userID)).thenReturn(existingUser);
 
@@ -121,7 +121,7 @@ public class UserServiceTests {
         when(userRepository.findById(userID)).thenReturn(Optional.of(existingUser));
 
         Role newRole = new Role(RoleEnum.ROLE_ADMIN);
-        when(roleRepository.findByName(RoleEnum.ROLE_ADMIN)).thenReturn(Optional.of(newRole));
+        when(referenceData.getRole(RoleEnum.ROLE_ADMIN)).thenReturn(newRole);
 
         when(userService.getUserById(userID)).thenReturn(existingUser);
 
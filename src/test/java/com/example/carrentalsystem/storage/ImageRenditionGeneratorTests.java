@@ -0,0 +1,86 @@
+package com.example.carrentalsystem.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ImageRenditionGeneratorTests {
+    private ImageStorage imageStorage;
+    private TaskExecutor executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageStorage = mock(ImageStorage.class);
+        executor = mock(TaskExecutor.class);
+        when(imageStorage.load("hash")).thenReturn(new ByteArrayResource(png(4000, 2000)));
+    }
+
+    //void generate(String contentHash);
+    //Test when the image is larger than every rendition
+    @Test
+    public void shouldStoreRenditionOfEverySize() throws IOException {
+        new ImageRenditionGenerator(imageStorage, executor, 10_000_000).generate("hash");
+
+        assertRendition(ImageSize.FULL, 2048, 1024);
+        assertRendition(ImageSize.DETAIL, 1024, 512);
+        assertRendition(ImageSize.THUMBNAIL, 320, 160);
+    }
+
+    //void generate(String contentHash);
+    //Test when the image header declares more pixels than allowed
+    @Test
+    public void shouldNotDecodeImageWithTooManyPixels() throws IOException {
+        new ImageRenditionGenerator(imageStorage, executor, 4000 * 2000 - 1).generate("hash");
+
+        verify(imageStorage, never()).storeRendition(any(), any(), any());
+    }
+
+    //void submit(String contentHash);
+    //Test when the queue is full and the image is submitted again once there is room
+    @Test
+    public void shouldRetryRejectedImage() throws IOException {
+        ImageRenditionGenerator generator = new ImageRenditionGenerator(imageStorage, executor, 10_000_000);
+        doThrow(new TaskRejectedException("Queue is full")).doThrow(new TaskRejectedException("Queue is full"))
+                .doAnswer(invocation -> {
+                    invocation.<Runnable>getArgument(0).run();
+                    return null;
+                }).when(executor).execute(any(Runnable.class));
+
+        generator.submit("hash");
+        generator.retryRejected();
+        verify(imageStorage, never()).storeRendition(any(), any(), any());
+
+        generator.retryRejected();
+        verify(imageStorage, times(3)).storeRendition(eq("hash"), any(), any());
+
+        generator.retryRejected();
+        verify(executor, times(3)).execute(any(Runnable.class));
+    }
+
+    private void assertRendition(ImageSize size, int width, int height) throws IOException {
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+        verify(imageStorage).storeRendition(eq("hash"), eq(size), content.capture());
+
+        BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(content.getValue()));
+        assertEquals(width, rendition.getWidth());
+        assertEquals(height, rendition.getHeight());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", output);
+        return output.toByteArray();
+    }
+}